@@ -138,6 +138,7 @@ public class AddRuleDialogFragment extends DialogFragment {
                     mThermostat.addSwitch(mDay, nPeriod);
                     mListener.onDialogPositiveClick(AddRuleDialogFragment.this);
                 }
+                mThermostat.commitEdits();
             }
         })
                 .setNegativeButton(R.string.cancel, new DialogInterface.OnClickListener() {
@@ -9,18 +9,19 @@ import android.widget.BaseAdapter;
 import android.widget.ImageButton;
 import android.widget.TextView;
 
-import java.util.ArrayList;
+import java.util.List;
 
 import nl.tue.hti.g33.thermostat.utils.DAY;
 import nl.tue.hti.g33.thermostat.utils.Period;
 import nl.tue.hti.g33.thermostat.utils.Thermostat;
+import nl.tue.hti.g33.thermostat.utils.Time;
 
 /**
  * @author Alex, 21.06.2015.
  */
 public class DayPeriodAdapter extends BaseAdapter {
 
-    private ArrayList<Period> mDayPeriods;
+    private List<Period> mDayPeriods;
     private LayoutInflater inflater;
     private Thermostat mThermostat;
     private DAY mDay;
@@ -32,14 +33,14 @@ public class DayPeriodAdapter extends BaseAdapter {
         private TextView endTime;
     }
 
-    public DayPeriodAdapter(Context context, Iterable<Period> dayPeriods,
+    /**
+     * @param dayPeriods Periods to show; the list is kept, so it must not change.
+     */
+    public DayPeriodAdapter(Context context, List<Period> dayPeriods,
                             DAY day, FragmentManager manager) {
 
         inflater = LayoutInflater.from(context);
-        mDayPeriods = new ArrayList<>();
-        for (Period p : dayPeriods) {
-            mDayPeriods.add(p);
-        }
+        mDayPeriods = dayPeriods;
         mThermostat = Thermostat.getInstance();
         mDay = day;
         mManager = manager;
@@ -113,8 +114,10 @@ public class DayPeriodAdapter extends BaseAdapter {
         else {
             holder = (ViewHolder) convertView.getTag();
         }
-        holder.startTime.setText(mDayPeriods.get(position).getStartingTimeT().toString());
-        holder.endTime.setText(mDayPeriods.get(position).getEndTimeT().toString());
+        // Shared texts, nothing is formatted per bind
+        Period period = mDayPeriods.get(position);
+        holder.startTime.setText(Time.toString(period.getStartingTime()));
+        holder.endTime.setText(Time.toString(period.getEndTime()));
 
         ImageButton deleteBtn = (ImageButton) convertView.findViewById(R.id.delete_item);
         ImageButton editBtn = (ImageButton) convertView.findViewById(R.id.edit_item);
@@ -123,10 +126,8 @@ public class DayPeriodAdapter extends BaseAdapter {
             public void onClick(View v) {
                 Period p = mDayPeriods.get(position);
                 mThermostat.deleteSwitch(mDay, p);
-                mDayPeriods = new ArrayList<>();
-                for (Period per : mThermostat.getDaySchedule(mDay)) {
-                    mDayPeriods.add(per);
-                }
+                mThermostat.commitEdits();
+                mDayPeriods = mThermostat.getDayPeriods(mDay);
                 notifyDataSetChanged();
             }
         });
@@ -136,10 +137,7 @@ public class DayPeriodAdapter extends BaseAdapter {
                 Period p = mDayPeriods.get(position);
                 AddRuleDialogFragment frag = AddRuleDialogFragment.newInstance(p, mDay);
                 frag.show(mManager, "Edit view");
-                mDayPeriods = new ArrayList<>();
-                for (Period per : mThermostat.getDaySchedule(mDay)) {
-                    mDayPeriods.add(per);
-                }
+                mDayPeriods = mThermostat.getDayPeriods(mDay);
                 notifyDataSetChanged();
             }
         });
@@ -148,10 +146,7 @@ public class DayPeriodAdapter extends BaseAdapter {
 
     public void invalidate() {
 
-        mDayPeriods = new ArrayList<>();
-        for (Period per : mThermostat.getDaySchedule(mDay)) {
-            mDayPeriods.add(per);
-        }
+        mDayPeriods = mThermostat.getDayPeriods(mDay);
         notifyDataSetChanged();
     }
 }
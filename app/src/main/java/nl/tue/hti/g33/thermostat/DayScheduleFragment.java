@@ -74,7 +74,7 @@ public class DayScheduleFragment extends Fragment implements ThermostatProvider
         DayTimelineView timeline = (DayTimelineView) root.findViewById(R.id.timeline_day);
         timeline.setDayOfTheWeek(mDay);
         mViewAdapter = new DayPeriodAdapter(getActivity(),
-                mThermostat.getDaySchedule(mDay), mDay, getFragmentManager());
+                mThermostat.getDayPeriods(mDay), mDay, getFragmentManager());
         ListView switchesList = (ListView) root.findViewById(R.id.switches_list);
         switchesList.setAdapter(mViewAdapter);
         return root;
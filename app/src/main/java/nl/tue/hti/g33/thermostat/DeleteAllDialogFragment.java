@@ -10,8 +10,6 @@ import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.v4.app.DialogFragment;
 
-import java.util.ArrayList;
-
 import nl.tue.hti.g33.thermostat.utils.DAY;
 import nl.tue.hti.g33.thermostat.utils.Period;
 import nl.tue.hti.g33.thermostat.utils.Thermostat;
@@ -85,13 +83,11 @@ public class DeleteAllDialogFragment extends DialogFragment {
                 .setPositiveButton("OK", new DialogInterface.OnClickListener() {
                     @Override
                     public void onClick(DialogInterface dialog, int which) {
-                        ArrayList<Period> toDel = new ArrayList<>();
-                        for (Period p : mThermostat.getDaySchedule(mDay)) {
-                            toDel.add(p);
-                        }
-                        for (Period p : toDel) {
+                        // The list does not change while the switches are deleted
+                        for (Period p : mThermostat.getDayPeriods(mDay)) {
                             mThermostat.deleteSwitch(mDay, p);
                         }
+                        mThermostat.commitEdits();
                         mListener.onDialogPositiveClick(DeleteAllDialogFragment.this);
                     }
                 })
@@ -10,7 +10,6 @@ import android.view.MenuItem;
 import android.widget.Toast;
 
 import nl.tue.hti.g33.thermostat.utils.DAY;
-import nl.tue.hti.g33.thermostat.utils.Period;
 import nl.tue.hti.g33.thermostat.utils.Thermostat;
 import nl.tue.hti.g33.thermostat.utils.ThermostatProvider;
 
@@ -47,6 +46,20 @@ public class DetailDayActivity extends AppCompatActivity
                 .add(R.id.container_day_schedule, mFrag).commit();
     }
 
+    @Override
+    protected void onResume() {
+
+        super.onResume();
+        mThermostat.setForeground(true);
+    }
+
+    @Override
+    protected void onPause() {
+
+        mThermostat.setForeground(false);
+        super.onPause();
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
 
@@ -65,11 +78,7 @@ public class DetailDayActivity extends AppCompatActivity
 
         if (id == R.id.action_add_switch) {
 
-            int cnt = 0;
-            for (Period p : mThermostat.getDaySchedule(mDay)) {
-                cnt++;
-            }
-            if (cnt < 5) {
+            if (mThermostat.getDayPeriods(mDay).size() < 5) {
                 AddRuleDialogFragment dialog = AddRuleDialogFragment.newInstance(null, mDay);
                 dialog.show(getSupportFragmentManager(), "Add switch");
             }
@@ -12,11 +12,13 @@ import android.widget.NumberPicker;
 import android.widget.Switch;
 import android.widget.TextView;
 
+import nl.tue.hti.g33.thermostat.utils.DAY;
 import nl.tue.hti.g33.thermostat.utils.Temperature;
 import nl.tue.hti.g33.thermostat.utils.Thermostat;
 import nl.tue.hti.g33.thermostat.utils.ThermostatListener;
 import nl.tue.hti.g33.thermostat.utils.ThermostatProvider;
 import nl.tue.hti.g33.thermostat.utils.Time;
+import nl.tue.hti.g33.thermostat.utils.WeekTimeline;
 
 
 /**
@@ -24,7 +26,7 @@ import nl.tue.hti.g33.thermostat.utils.Time;
  */
 public class HomeFragment extends Fragment
         implements ThermostatListener, NumberPicker.OnValueChangeListener,
-        Switch.OnCheckedChangeListener {
+        NumberPicker.OnScrollListener, Switch.OnCheckedChangeListener {
 
     private static final String LOG_TAG = "HomeFragment";
 
@@ -60,6 +62,8 @@ public class HomeFragment extends Fragment
         Switch vacationMode = (Switch) root.findViewById(R.id.vacation_mode_on);
         temp.setOnValueChangedListener(this);
         tempD.setOnValueChangedListener(this);
+        temp.setOnScrollListener(this);
+        tempD.setOnScrollListener(this);
         vacationMode.setOnCheckedChangeListener(this);
         temp.setMaxValue(29);
         temp.setMinValue(5);
@@ -77,7 +81,7 @@ public class HomeFragment extends Fragment
             public void run() {
                 TextView dateTime = (TextView) getActivity().findViewById(R.id.date_time);
                 dateTime.setText("Today is " + mThermostat.getDayOfTheWeek().getFullName()
-                        + ", " + new Time(mThermostat.getCurrentTime()).toString());
+                        + ", " + Time.toString(mThermostat.getCurrentTime()));
 
                 TextView curTemp = (TextView) getActivity().findViewById(R.id.current_temperature);
                 curTemp.setText("Current temperature is " + mThermostat.getCurrentTemperature());
@@ -85,6 +89,9 @@ public class HomeFragment extends Fragment
                 TextView targTemp = (TextView) getActivity().findViewById(R.id.target_temperature);
                 targTemp.setText("Target temperature is " + mThermostat.getTargetTemperature());
 
+                TextView nextSwitch = (TextView) getActivity().findViewById(R.id.next_switch);
+                nextSwitch.setText(describeNextSwitch());
+
                 TextView dayTemp = (TextView) getActivity().findViewById(R.id.day_temperature);
                 dayTemp.setText("Day temperature is " + mThermostat.getDayTemperature());
 
@@ -97,6 +104,28 @@ public class HomeFragment extends Fragment
         });
     }
 
+    /**
+     * @return Text telling when the week program switches next and to what.
+     */
+    private String describeNextSwitch() {
+
+        DAY day = mThermostat.getDayOfTheWeek();
+        if (!mThermostat.getWeekScheduleOn() || day == null) {
+            return "Week program is off";
+        }
+        WeekTimeline timeline = mThermostat.getTimeline();
+        int now = mThermostat.getCurrentTime();
+        int next = timeline.nextSwitchAfter(day.getId(), now);
+        if (next < 0) {
+            return "No switches in the week program";
+        }
+        int left = next - (day.getId() * WeekTimeline.MINUTES_PER_DAY + now);
+        return "Next switch to " + (timeline.isDayAt(day.getId(), now) ? "night" : "day")
+                + " on " + DAY.getById(next / WeekTimeline.MINUTES_PER_DAY % 7).getFullName()
+                + " at " + Time.valueOf(next % WeekTimeline.MINUTES_PER_DAY)
+                + " (in " + left / 60 + " h " + left % 60 + " min)";
+    }
+
     /**
      * Called upon a change of the current value.
      *
@@ -138,10 +167,10 @@ public class HomeFragment extends Fragment
                 tempD = picker.getValue();
 
                 if (mThermostat.getWeekScheduleOn()) {
-                    mThermostat.setTemporaryOverride(new Temperature(temp + tempD * 0.1, false));
+                    mThermostat.setTemporaryOverride(Temperature.ofTenths(temp * 10 + tempD));
                 }
                 else {
-                    mThermostat.setVacationMode(true, new Temperature(temp + tempD * 0.1, false));
+                    mThermostat.setVacationMode(true, Temperature.ofTenths(temp * 10 + tempD));
                 }
                 break;
             case R.id.temperature:
@@ -149,10 +178,10 @@ public class HomeFragment extends Fragment
                 temp = picker.getValue();
 
                 if (mThermostat.getWeekScheduleOn()) {
-                    mThermostat.setTemporaryOverride(new Temperature(temp + tempD * 0.1, false));
+                    mThermostat.setTemporaryOverride(Temperature.ofTenths(temp * 10 + tempD));
                 }
                 else {
-                    mThermostat.setVacationMode(true, new Temperature(temp + tempD * 0.1, false));
+                    mThermostat.setVacationMode(true, Temperature.ofTenths(temp * 10 + tempD));
                 }
                 break;
             default:
@@ -160,6 +189,20 @@ public class HomeFragment extends Fragment
         }
     }
 
+    /**
+     * Callback invoked while the number picker scroll state changes.
+     *
+     * @param view        The view whose scroll state is being reported.
+     * @param scrollState The current scroll state.
+     */
+    @Override
+    public void onScrollStateChange(NumberPicker view, int scrollState) {
+
+        if (scrollState == SCROLL_STATE_IDLE) {
+            mThermostat.commitEdits();
+        }
+    }
+
     /**
      * Called when the checked state of a compound button has changed.
      *
@@ -172,10 +215,11 @@ public class HomeFragment extends Fragment
         int temp = ((NumberPicker) getView().findViewById(R.id.temperature)).getValue();
         int tempD = ((NumberPicker) getView().findViewById(R.id.temperatureD)).getValue();
         if (isChecked) {
-            mThermostat.setVacationMode(true, new Temperature(temp + tempD * 0.1, false));
+            mThermostat.setVacationMode(true, Temperature.ofTenths(temp * 10 + tempD));
         }
         else {
             mThermostat.setVacationMode(false, null);
         }
+        mThermostat.commitEdits();
     }
 }
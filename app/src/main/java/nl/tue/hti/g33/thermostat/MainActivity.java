@@ -27,6 +27,20 @@ public class MainActivity extends AppCompatActivity implements ThermostatProvide
         mThermostat = new Thermostat(this);
     }
 
+    @Override
+    protected void onResume() {
+
+        super.onResume();
+        mThermostat.setForeground(true);
+    }
+
+    @Override
+    protected void onPause() {
+
+        mThermostat.setForeground(false);
+        super.onPause();
+    }
+
 
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
@@ -18,7 +18,8 @@ import nl.tue.hti.g33.thermostat.utils.ThermostatProvider;
  * A simple {@link Fragment} subclass.
  */
 public class TemperaturesFragment extends Fragment
-        implements ThermostatListener, NumberPicker.OnValueChangeListener{
+        implements ThermostatListener, NumberPicker.OnValueChangeListener,
+        NumberPicker.OnScrollListener {
 
     private static final String LOG_TAG = "TemperaturesFragment";
 
@@ -65,6 +66,10 @@ public class TemperaturesFragment extends Fragment
         dayTempD.setOnValueChangedListener(this);
         nightTemp.setOnValueChangedListener(this);
         nightTempD.setOnValueChangedListener(this);
+        dayTemp.setOnScrollListener(this);
+        dayTempD.setOnScrollListener(this);
+        nightTemp.setOnScrollListener(this);
+        nightTempD.setOnScrollListener(this);
         return root;
     }
 
@@ -108,13 +113,13 @@ public class TemperaturesFragment extends Fragment
                 temp = ((NumberPicker) getView().findViewById(R.id.setDayTemperature)).getValue();
                 tempD = picker.getValue();
 
-                mThermostat.updateDayTemperature(temp + tempD * 0.1);
+                mThermostat.updateDayTemperatureTenths(temp * 10 + tempD);
                 break;
             case R.id.setNightTemperature:
                 tempD = ((NumberPicker) getView().findViewById(R.id.setNightTemperatureD)).getValue();
                 temp = picker.getValue();
 
-                mThermostat.updateNightTemperature(temp + tempD * 0.1);
+                mThermostat.updateNightTemperatureTenths(temp * 10 + tempD);
                 break;
             case R.id.setNightTemperatureD:
                 if (oldVal == 9 && newVal == 0) {
@@ -144,19 +149,33 @@ public class TemperaturesFragment extends Fragment
                 temp = ((NumberPicker) getView().findViewById(R.id.setNightTemperature)).getValue();
                 tempD = picker.getValue();
 
-                mThermostat.updateNightTemperature(temp + tempD * 0.1);
+                mThermostat.updateNightTemperatureTenths(temp * 10 + tempD);
                 break;
             case R.id.setDayTemperature:
                 tempD = ((NumberPicker) getView().findViewById(R.id.setDayTemperatureD)).getValue();
                 temp = picker.getValue();
 
-                mThermostat.updateDayTemperature(temp + tempD * 0.1);
+                mThermostat.updateDayTemperatureTenths(temp * 10 + tempD);
                 break;
             default:
                 Log.e(LOG_TAG, "Wrong number picker");
         }
     }
 
+    /**
+     * Callback invoked while the number picker scroll state changes.
+     *
+     * @param view        The view whose scroll state is being reported.
+     * @param scrollState The current scroll state.
+     */
+    @Override
+    public void onScrollStateChange(NumberPicker view, int scrollState) {
+
+        if (scrollState == SCROLL_STATE_IDLE) {
+            mThermostat.commitEdits();
+        }
+    }
+
     @Override
     public void onThermostatUpdate(Thermostat thermostat) {
 
@@ -172,12 +191,12 @@ public class TemperaturesFragment extends Fragment
                             (NumberPicker) getView().findViewById(R.id.setNightTemperature);
                     NumberPicker nightTempD =
                             (NumberPicker) getView().findViewById(R.id.setNightTemperatureD);
-                    dayTemp.setValue((int) mThermostat.getDayTemperature());
-                    dayTempD.setValue((int) ((mThermostat.getDayTemperature()
-                            - (int) mThermostat.getDayTemperature()) * 10));
-                    nightTemp.setValue((int) mThermostat.getNightTemperature());
-                    nightTempD.setValue((int) ((mThermostat.getNightTemperature()
-                            - (int) mThermostat.getNightTemperature()) * 10));
+                    int day = mThermostat.getDayTemperatureTenths();
+                    int night = mThermostat.getNightTemperatureTenths();
+                    dayTemp.setValue(day / 10);
+                    dayTempD.setValue(day % 10);
+                    nightTemp.setValue(night / 10);
+                    nightTempD.setValue(night % 10);
                 }
             });
         }
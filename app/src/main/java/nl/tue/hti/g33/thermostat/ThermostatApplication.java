@@ -0,0 +1,23 @@
+package nl.tue.hti.g33.thermostat;
+
+import android.app.Application;
+
+import nl.tue.hti.g33.thermostat.logging.Log;
+import nl.tue.hti.g33.thermostat.parser.XmlParser;
+import nl.tue.hti.g33.thermostat.platform.AndroidLogger;
+import nl.tue.hti.g33.thermostat.platform.AndroidXmlFactory;
+
+/**
+ * Plugs the Android logger and XML parser into thermostat-core before anything else runs.
+ * @author Alex, 05.07.2015.
+ */
+public class ThermostatApplication extends Application {
+
+    @Override
+    public void onCreate() {
+
+        super.onCreate();
+        Log.setLogger(new AndroidLogger());
+        XmlParser.setXmlFactory(new AndroidXmlFactory());
+    }
+}
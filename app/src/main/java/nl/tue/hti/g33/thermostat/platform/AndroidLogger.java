@@ -0,0 +1,18 @@
+package nl.tue.hti.g33.thermostat.platform;
+
+import android.util.Log;
+
+import nl.tue.hti.g33.thermostat.logging.Logger;
+
+/**
+ * Sends the messages of the platform independent classes to logcat.
+ * @author Alex, 05.07.2015.
+ */
+public class AndroidLogger implements Logger {
+
+    @Override
+    public void log(int priority, String tag, String msg) {
+
+        Log.println(priority, tag, msg);
+    }
+}
@@ -0,0 +1,20 @@
+package nl.tue.hti.g33.thermostat.platform;
+
+import android.util.Xml;
+
+import org.xmlpull.v1.XmlPullParser;
+
+import nl.tue.hti.g33.thermostat.parser.XmlFactory;
+
+/**
+ * Creates the XmlPullParser of the platform.
+ * @author Alex, 05.07.2015.
+ */
+public class AndroidXmlFactory implements XmlFactory {
+
+    @Override
+    public XmlPullParser newPullParser() {
+
+        return Xml.newPullParser();
+    }
+}
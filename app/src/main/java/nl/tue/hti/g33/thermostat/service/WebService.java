@@ -5,16 +5,31 @@ import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Binder;
+import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
 import android.util.Log;
 
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
+import nl.tue.hti.g33.thermostat.parser.BinaryCodec;
 import nl.tue.hti.g33.thermostat.parser.ParsedThermostat;
+import nl.tue.hti.g33.thermostat.parser.ThermostatCodec;
 import nl.tue.hti.g33.thermostat.parser.XmlParser;
+import nl.tue.hti.g33.thermostat.utils.PollingPolicy;
 
 /**
  * Service used to send / fetch data
@@ -28,18 +43,57 @@ public class WebService extends Service {
 
     private static final String BASE_URL = "wwwis.win.tue.nl";
     private static final String BACKUP_URL = "pcwin889.win.tue.nl";
-    private static final String COURSE_URL = "2id40-ws";
+    /**
+     * Thermostat of this app. Other thermostats can be polled through {@link #getEngine()}.
+     */
     private static final String THERMOSTAT_ID = "33"; // TODO: Can be NOT hardcoded
-    private static final String SCHEDULE_URL = "weekProgram";
-    private static final String SCHEDULE_STATE_URL = "weekProgramState";
-    private static final String TARGET_URL = "targetTemperature";
-    private static final String CURRENT_URL = "currentTemperature";
-    private static final String NIGHT_URL = "nightTemperature";
-    private static final String DAY_URL = "dayTemperature";
-
-    private String preferredURL = BASE_URL;
-    private Uri.Builder mUriBuilder;
+
+    private static final String JOURNAL_FILE = "uploads.journal";
+    private static final String SNAPSHOT_FILE = "thermostat.snapshot";
+    private static final long PROBE_INTERVAL = 30000;
+    private static final int POLL_THREADS = 2;
+
+    private static final long UPLOAD_DEBOUNCE = 300;
+    private static final long MAX_UPLOAD_DELAY = 1000;
+
+    private HostSelector mHosts;
+    private ClientEngine mEngine;
     private XmlParser parser;
+    private HttpTransport mTransport;
+    private UploadExecutor mUploads;
+    private volatile UploadJournal mJournal;
+    private final ThermostatCodec mSnapshotCodec;
+    private File mSnapshotFile;
+    private volatile ParsedThermostat mLastKnownState;
+    private final HashSet<Long> mInFlight = new HashSet<>();
+    private final UploadExecutor.Callback mUploadCallback = new UploadExecutor.Callback() {
+        @Override
+        public void onUploadFinished(UploadResult result) {
+
+            mHosts.report(Uri.parse(result.getUrl()).getHost(), result.getLatency(),
+                    result.getStatus() != UploadResult.STATUS_FAILED && result.getStatus() < 500);
+            if (!result.isSuccessful()) {
+                Log.w(LOG_TAG, "Upload failed: " + result);
+            }
+            else {
+                Log.v(LOG_TAG, "Uploaded " + result);
+            }
+        }
+    };
+
+    private final LinkedHashMap<String, ParsedThermostat> mPendingUploads;
+    private long mFirstPendingAt;
+    // Queues uploads and does all journal and snapshot I/O, which must not block the main
+    // thread
+    private HandlerThread mUploadThread;
+    private Handler mHandler;
+    private final Runnable mFlushUploads = new Runnable() {
+        @Override
+        public void run() {
+
+            sendPendingUploads();
+        }
+    };
 
     private final IBinder mBinder;
 
@@ -57,11 +111,74 @@ public class WebService extends Service {
     public WebService() {
 
         super();
-        mUriBuilder = new Uri.Builder();
         parser = new XmlParser();
+        mTransport = new HttpTransport();
+        mHosts = new HostSelector(BASE_URL, BACKUP_URL);
+        mUploads = new UploadExecutor();
+        mSnapshotCodec = new BinaryCodec();
+        mPendingUploads = new LinkedHashMap<>();
         mBinder = new LocalBinder();
     }
 
+    @Override
+    public void onCreate() {
+
+        super.onCreate();
+        mUploadThread = new HandlerThread("Uploads");
+        mUploadThread.start();
+        mHandler = new Handler(mUploadThread.getLooper());
+        final File journalFile = new File(getFilesDir(), JOURNAL_FILE);
+        mSnapshotFile = new File(getFilesDir(), SNAPSHOT_FILE);
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+
+                mJournal = new UploadJournal(journalFile);
+                mLastKnownState = loadSnapshot();
+            }
+        });
+        mEngine = new ClientEngine(mTransport, mHosts, POLL_THREADS);
+        mEngine.setFetchListener(new ClientEngine.FetchListener() {
+            @Override
+            public void onFetchSucceeded(ThermostatClient client) {
+
+                // The server is reachable again, so resend what is left in the journal
+                UploadJournal journal = mJournal;
+                if (client.getId().equals(THERMOSTAT_ID) && journal != null
+                        && journal.hasPending()) {
+                    replayJournal(journal);
+                }
+            }
+        });
+        mEngine.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+
+                mEngine.probeHosts();
+            }
+        }, PROBE_INTERVAL);
+    }
+
+    @Override
+    public void onDestroy() {
+
+        mEngine.shutdown();
+        ThermostatClient client = mEngine.getThermostat(THERMOSTAT_ID);
+        final ParsedThermostat state = client != null ? client.getState() : null;
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+
+                mJournal.sync();
+                if (state != null) {
+                    saveSnapshot(state);
+                }
+                mUploadThread.quit();
+            }
+        });
+        super.onDestroy();
+    }
+
     /**
      * Return the communication channel to the service.  May return null if
      * clients can not bind to the service.  The returned
@@ -85,89 +202,312 @@ public class WebService extends Service {
     @Override
     public IBinder onBind(Intent intent) {
 
+        warmUp(BASE_URL);
+        warmUp(BACKUP_URL);
         return mBinder;
     }
 
-    public ParsedThermostat getData() {
+    /**
+     * @return Engine polling the thermostats, available once the service is created.
+     */
+    public ClientEngine getEngine() {
+
+        return mEngine;
+    }
+
+    /**
+     * @param policy Polling policy used if the thermostat of this app is not polled yet.
+     * @return Client of the thermostat of this app, which is polled from now on.
+     */
+    public ThermostatClient getClient(PollingPolicy policy) {
 
-        mUriBuilder.scheme("http").authority(preferredURL).path(COURSE_URL);
-        mUriBuilder.appendPath(THERMOSTAT_ID).appendPath("");
-        HttpURLConnection connection = null; // TODO: fix malformed url
+        return mEngine.addThermostat(THERMOSTAT_ID, policy);
+    }
 
-        try {
-            URL url = new URL(mUriBuilder.toString());
-            connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.connect();
-            int status = connection.getResponseCode();
-
-            if (status != 200) {
-                if (status == 404) {
-                    //TODO: create new thermostat
+    /**
+     * @return State of the thermostat of this app as last fetched, possibly by a previous run
+     * of the service, or null if it was never fetched or the stored state is still being
+     * read. Meant to be shown until the first poll succeeded.
+     */
+    public ParsedThermostat getLastKnownState() {
+
+        ThermostatClient client = mEngine.getThermostat(THERMOSTAT_ID);
+        ParsedThermostat state = client != null ? client.getState() : null;
+        return state != null ? state : mLastKnownState;
+    }
+
+    /**
+     * Make the next fetch get and return the complete thermostat document, e.g. after the
+     * week program was changed.
+     */
+    public void invalidate() {
+
+        ThermostatClient client = mEngine.getThermostat(THERMOSTAT_ID);
+        if (client != null) {
+            client.invalidate();
+        }
+    }
+
+    /**
+     * Queue an upload of one resource. Uploads of the same resource are coalesced so that only
+     * the latest value is sent; the queue is flushed once no new value arrived for a short
+     * while, after at most {@value #MAX_UPLOAD_DELAY} ms, or on {@link #flushUploads()}.
+     * @param update Resource to upload: "day_temperature", "night_temperature",
+     *               "target_temperature", "week_program_state" or "week_program".
+     * @param thermostat State containing the value to upload.
+     * @throws IllegalArgumentException
+     */
+    public void putData(String update, ParsedThermostat thermostat) {
+
+        switch (update) {
+            case "day_temperature":
+            case "night_temperature":
+            case "target_temperature":
+            case "week_program_state":
+            case "week_program":
+                break;
+            default:
+                Log.e(LOG_TAG, "Wrong request to WebService sender.");
+                throw new IllegalArgumentException(LOG_TAG + "Uploading data impossible.");
+        }
+
+        long now = System.currentTimeMillis();
+        synchronized (mPendingUploads) {
+            if (mPendingUploads.isEmpty()) {
+                mFirstPendingAt = now;
+            }
+            // Re-insert so that the flush order follows the order of the latest edits
+            mPendingUploads.remove(update);
+            mPendingUploads.put(update, thermostat);
+        }
+        mHandler.removeCallbacks(mFlushUploads);
+        if (now - mFirstPendingAt >= MAX_UPLOAD_DELAY) {
+            mHandler.post(mFlushUploads);
+        }
+        else {
+            mHandler.postDelayed(mFlushUploads, UPLOAD_DEBOUNCE);
+        }
+    }
+
+    /**
+     * Send all queued uploads right away, e.g. when the user finished an edit. Returns at
+     * once; the uploads are journaled and sent in the background.
+     */
+    public void flushUploads() {
+
+        mHandler.removeCallbacks(mFlushUploads);
+        mHandler.post(mFlushUploads);
+    }
+
+    /**
+     * Journal and send all queued uploads. Runs on the upload thread only.
+     */
+    private void sendPendingUploads() {
+
+        LinkedHashMap<String, ParsedThermostat> toSend;
+        synchronized (mPendingUploads) {
+            toSend = new LinkedHashMap<>(mPendingUploads);
+            mPendingUploads.clear();
+        }
+        for (Map.Entry<String, ParsedThermostat> upload : toSend.entrySet()) {
+            sendData(upload.getKey(), upload.getValue());
+        }
+        mJournal.sync();
+    }
+
+    /**
+     * Start uploading one resource. The upload is recorded in the journal first, so it is
+     * retried after the next successful fetch if it fails.
+     * @return Future holding the upload result, or null if the upload could not be queued.
+     */
+    private Future<UploadResult> sendData(String update, ParsedThermostat thermostat) {
+
+        String toSend = encode(update, thermostat);
+        long seq = mJournal.append(update, toSend);
+        return submitUpload(seq, update, toSend);
+    }
+
+    private Future<UploadResult> submitUpload(final long seq, final String update,
+                                              String toSend) {
+
+        synchronized (mInFlight) {
+            mInFlight.add(seq);
+        }
+        UploadExecutor.Callback callback = new UploadExecutor.Callback() {
+            @Override
+            public void onUploadFinished(UploadResult result) {
+
+                synchronized (mInFlight) {
+                    mInFlight.remove(seq);
+                }
+                if (result.isSuccessful()) {
+                    mJournal.acknowledge(seq);
+                    if (!isVolatile(update)) {
+                        // Let the next fetch confirm what the server made of it
+                        invalidate();
+                    }
                 }
-                else {
-                    preferredURL = BACKUP_URL;
-                    Log.w(LOG_TAG, "Did not get status 200/404—some error here");
-                    return null;
+                else if (mJournal.fail(seq, result.isRejected(), System.currentTimeMillis())) {
+                    // Dropped for good, so show what the server really has
+                    invalidate();
                 }
+                mUploadCallback.onUploadFinished(result);
             }
-
-            InputStream inputStream = connection.getInputStream();
-            if (inputStream == null) {
-                Log.w(LOG_TAG, "Something is wrong with the website");
-                preferredURL = BACKUP_URL;
-                return null;
+        };
+        try {
+            return mUploads.submit(
+                    new SendDataTask(mTransport, endpoints(), resource(update), toSend), callback);
+        } catch (RejectedExecutionException e) {
+            Log.e(LOG_TAG, "Postponing upload of " + update + ": too many pending uploads");
+            synchronized (mInFlight) {
+                mInFlight.remove(seq);
             }
-            return parser.parse(inputStream);
-        } catch (IOException e) {
-            Log.e(LOG_TAG, "Fetching data failed: " + e);
             return null;
-        } finally {
-            if (connection != null) {
-                connection.disconnect();
+        }
+    }
+
+    /**
+     * Resend journaled uploads that are not on their way already and whose retry delay
+     * passed.
+     */
+    private void replayJournal(UploadJournal journal) {
+
+        for (UploadJournal.Entry entry : journal.getDue(System.currentTimeMillis())) {
+            boolean inFlight;
+            synchronized (mInFlight) {
+                inFlight = mInFlight.contains(entry.getSeq());
+            }
+            if (!inFlight) {
+                Log.v(LOG_TAG, "Replaying upload of " + entry.getResource());
+                submitUpload(entry.getSeq(), entry.getResource(), entry.getBody());
             }
         }
     }
 
-    public void putData(String update, ParsedThermostat thermostat) {
+    /**
+     * @return True if {@code update} is polled on every fetch in tiered sync mode anyway.
+     */
+    private static boolean isVolatile(String update) {
+
+        return update.equals("target_temperature") || update.equals("week_program_state");
+    }
+
+    private String encode(String update, ParsedThermostat thermostat) {
 
-        mUriBuilder.scheme("http").authority(preferredURL).path(COURSE_URL);
-        mUriBuilder.appendPath(THERMOSTAT_ID);
-        String toSend;
         switch (update) {
             case "day_temperature":
-                toSend = "<day_temperature>"
-                        + thermostat.mDayTemperature.getTemperature(false)
+                return "<day_temperature>"
+                        + thermostat.mDayTemperature.toString(false)
                         + "</day_temperature>";
-                mUriBuilder.appendPath(DAY_URL);
-                break;
             case "night_temperature":
-                toSend = "<night_temperature>"
-                        + thermostat.mNightTemperature.getTemperature(false)
+                return "<night_temperature>"
+                        + thermostat.mNightTemperature.toString(false)
                         + "</night_temperature>";
-                mUriBuilder.appendPath(NIGHT_URL);
-                break;
             case "target_temperature":
                 // Work around of a stupid bug on the server
-                toSend = "<current_temperature>"
-                        + thermostat.mTargetTemperature.getTemperature(false)
+                return "<current_temperature>"
+                        + thermostat.mTargetTemperature.toString(false)
                         + "</current_temperature>";
-                mUriBuilder.appendPath(CURRENT_URL);
-                break;
             case "week_program_state":
-                toSend = "<week_program_state>"
+                return "<week_program_state>"
                         + (thermostat.mWeekScheduleOn ? "on" : "off")
                         + "</week_program_state>";
-                mUriBuilder.appendPath(SCHEDULE_STATE_URL);
-                break;
             case "week_program":
-                toSend = parser.serialize(thermostat);
-                mUriBuilder.appendPath(SCHEDULE_URL);
-                break;
+                return parser.serialize(thermostat);
             default:
                 Log.e(LOG_TAG, "Wrong request to WebService sender.");
                 throw new IllegalArgumentException(LOG_TAG + "Uploading data impossible.");
         }
-        new SendDataTask().execute(toSend, mUriBuilder.toString());
+    }
+
+    /**
+     * @return Addresses of the thermostat of this app on the preferred host.
+     */
+    private Endpoints endpoints() {
+
+        String host = mHosts.getPreferred();
+        ThermostatClient client = mEngine.getThermostat(THERMOSTAT_ID);
+        return client != null ? client.getEndpoints(host) : new Endpoints(host, THERMOSTAT_ID);
+    }
+
+    private static Endpoints.Resource resource(String update) {
+
+        switch (update) {
+            case "day_temperature":
+                return Endpoints.Resource.DAY_TEMPERATURE;
+            case "night_temperature":
+                return Endpoints.Resource.NIGHT_TEMPERATURE;
+            case "target_temperature":
+                return Endpoints.Resource.CURRENT_TEMPERATURE;
+            case "week_program_state":
+                return Endpoints.Resource.WEEK_PROGRAM_STATE;
+            case "week_program":
+                return Endpoints.Resource.WEEK_PROGRAM;
+            default:
+                Log.e(LOG_TAG, "Wrong request to WebService sender.");
+                throw new IllegalArgumentException(LOG_TAG + "Uploading data impossible.");
+        }
+    }
+
+    /**
+     * Runs on the upload thread only.
+     * @return State stored by {@link #saveSnapshot(ParsedThermostat)}, or null if there is
+     * none.
+     */
+    private ParsedThermostat loadSnapshot() {
+
+        File file = mSnapshotFile;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(file));
+            byte[] data = new byte[(int) file.length()];
+            in.readFully(data);
+            return mSnapshotCodec.parse(data);
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException | IllegalArgumentException e) {
+            Log.e(LOG_TAG, "Could not read thermostat snapshot: " + e);
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+     * Store {@code state} to be shown by the next run of the service. Runs on the upload
+     * thread only.
+     */
+    private void saveSnapshot(ParsedThermostat state) {
+
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(mSnapshotFile);
+            out.write(mSnapshotCodec.serialize(state));
+        } catch (IOException | IllegalArgumentException e) {
+            Log.e(LOG_TAG, "Could not store thermostat snapshot: " + e);
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            Log.v(LOG_TAG, "Could not close stream: " + e);
+        }
+    }
+
+    private void warmUp(String host) {
+
+        try {
+            mTransport.warmUp(new URL("http", host, "/" + Endpoints.COURSE_URL + "/"));
+        } catch (MalformedURLException e) {
+            Log.w(LOG_TAG, "Cannot warm up connection to " + host);
+        }
     }
 }
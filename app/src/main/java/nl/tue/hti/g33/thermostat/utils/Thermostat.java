@@ -5,13 +5,13 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.ServiceConnection;
 import android.os.IBinder;
-import android.util.Log;
 
 import java.util.ArrayList;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Iterator;
+import java.util.List;
 
 import nl.tue.hti.g33.thermostat.parser.ParsedThermostat;
+import nl.tue.hti.g33.thermostat.service.ThermostatClient;
 import nl.tue.hti.g33.thermostat.service.WebService;
 
 /**
@@ -19,6 +19,8 @@ import nl.tue.hti.g33.thermostat.service.WebService;
  * between our UI code and server requests.
  * Also invokes all the data update requests and manages local storage; uses an
  * additional service to fetch / upload data from the server.
+ * The state is one {@link ThermostatSnapshot} that is replaced as a whole on every change,
+ * so readers never lock and always see values that belong together.
  * @author Alex, 17.06.2015.
  */
 public class Thermostat {
@@ -27,20 +29,17 @@ public class Thermostat {
 
     private static Thermostat instance;
 
-    private ArrayList<DaySchedule> mWeekSchedule;
-    private Temperature mDayTemperature;
-    private Temperature mNightTemperature;
-    private Temperature mCurrentTemperature;
-    private Temperature mTargetTemperature;
-    private boolean mWeekScheduleOn;
-    private int mTime;
-    private DAY mDayOfTheWeek;
+    private final Object mStateLock = new Object();
+    private volatile ThermostatSnapshot mSnapshot = ThermostatSnapshot.EMPTY;
+    private volatile WeekTimeline mTimeline = WeekTimeline.EMPTY;
 
     private boolean mFahrenheit = false;
     
     private ArrayList<ThermostatListener> mListener;
     private Context mContext;
-    private Timer mTimer;
+    private PollingPolicy mPollingPolicy;
+    private ThermostatClient mClient;
+    private final ThermostatClient.Listener mClientListener;
 
     private ServiceConnection mConnection;
     private WebService mService;
@@ -48,12 +47,18 @@ public class Thermostat {
 
     public Thermostat(Context context) {
 
+        this(context, new AdaptivePollingPolicy());
+    }
+
+    /**
+     * Create a thermostat polling the server according to {@code pollingPolicy}.
+     * @param context Context used to bind to {@link WebService}.
+     * @param pollingPolicy Decides the delay between two polls.
+     */
+    public Thermostat(Context context, PollingPolicy pollingPolicy) {
+
         mListener = new ArrayList<>();
         mContext = context;
-        mWeekSchedule = new ArrayList<>();
-        for (int i = 0; i < 7; i++) {
-            mWeekSchedule.add(new DaySchedule());
-        }
 
         mBound = false;
         mConnection = new ServiceConnection() {
@@ -62,6 +67,15 @@ public class Thermostat {
 
                 WebService.LocalBinder binder = (WebService.LocalBinder) service;
                 mService = binder.getService();
+                mClient = mService.getClient(mPollingPolicy);
+                mClient.addListener(mClientListener);
+                ParsedThermostat known = mService.getLastKnownState();
+                if (known != null) {
+                    // Show the last known values until the poll below succeeded
+                    downloadServer(known);
+                }
+                mClient.invalidate();
+                mService.getEngine().pollWithin(mClient, 0);
                 mBound = true;
             }
 
@@ -69,19 +83,22 @@ public class Thermostat {
             public void onServiceDisconnected(ComponentName name) {
 
                 mBound = false;
+                if (mClient != null) {
+                    mClient.removeListener(mClientListener);
+                    mClient = null;
+                }
             }
         };
-        Intent serviceIntent = new Intent(mContext, WebService.class);
-        mContext.bindService(serviceIntent, mConnection, Context.BIND_AUTO_CREATE);
-
-        mTimer = new Timer("WebFetcher", true);
-        mTimer.schedule(new TimerTask() {
+        mClientListener = new ThermostatClient.Listener() {
             @Override
-            public void run() {
+            public void onThermostatChanged(ThermostatClient client, ParsedThermostat state) {
 
-                downloadServer();
+                downloadServer(state);
             }
-        }, 0, 2000);
+        };
+        mPollingPolicy = pollingPolicy;
+        Intent serviceIntent = new Intent(mContext, WebService.class);
+        mContext.bindService(serviceIntent, mConnection, Context.BIND_AUTO_CREATE);
 
         instance = this;
     }
@@ -102,8 +119,17 @@ public class Thermostat {
      */
     public void updateDayTemperature(double temperature) {
 
-        mDayTemperature = new Temperature(temperature, mFahrenheit);
-        uploadServer("day_temperature");
+        setDayTemperature(Temperature.valueOf(temperature, mFahrenheit));
+    }
+
+    /**
+     * Save new day temperature for week schedule.
+     * @param tenths New day temperature in tenths of a degree Celsius.
+     * @throws IllegalArgumentException
+     */
+    public void updateDayTemperatureTenths(int tenths) {
+
+        setDayTemperature(Temperature.ofTenths(tenths));
     }
 
     /**
@@ -112,8 +138,17 @@ public class Thermostat {
      */
     public void updateNightTemperature(double temperature) {
 
-        mNightTemperature = new Temperature(temperature, mFahrenheit);
-        uploadServer("night_temperature");
+        setNightTemperature(Temperature.valueOf(temperature, mFahrenheit));
+    }
+
+    /**
+     * Save new night temperature for week schedule.
+     * @param tenths New night temperature in tenths of a degree Celsius.
+     * @throws IllegalArgumentException
+     */
+    public void updateNightTemperatureTenths(int tenths) {
+
+        setNightTemperature(Temperature.ofTenths(tenths));
     }
 
     /**
@@ -124,8 +159,9 @@ public class Thermostat {
      */
     public void addSwitch(DAY dayOfTheWeek, Period dayPeriod) {
 
-        DaySchedule schedule = mWeekSchedule.get(dayOfTheWeek.getId());
-        schedule.addDayPeriod(dayPeriod);
+        synchronized (mStateLock) {
+            mSnapshot = mSnapshot.withSwitchAdded(dayOfTheWeek, dayPeriod);
+        }
         uploadServer("week_program");
     }
 
@@ -137,8 +173,9 @@ public class Thermostat {
      */
     public void deleteSwitch(DAY dayOfTheWeek, Period dayPeriod) {
 
-        DaySchedule schedule = mWeekSchedule.get(dayOfTheWeek.getId());
-        schedule.deleteDayPeriod(dayPeriod);
+        synchronized (mStateLock) {
+            mSnapshot = mSnapshot.withSwitchDeleted(dayOfTheWeek, dayPeriod);
+        }
         uploadServer("week_program");
     }
 
@@ -148,11 +185,16 @@ public class Thermostat {
      */
     public void setVacationMode(boolean on, Temperature temperature) {
 
+        synchronized (mStateLock) {
+            ThermostatSnapshot snapshot = mSnapshot;
+            if (on) {
+                snapshot = snapshot.withTargetTemperature(temperature);
+            }
+            mSnapshot = snapshot.withWeekScheduleOn(!on);
+        }
         if (on) {
-            mTargetTemperature = temperature;
             uploadServer("target_temperature");
         }
-        mWeekScheduleOn = !on;
         uploadServer("week_program_state");
     }
 
@@ -162,53 +204,174 @@ public class Thermostat {
      */
     public void setTemporaryOverride(Temperature temperature) {
 
-        mTargetTemperature = temperature;
+        synchronized (mStateLock) {
+            mSnapshot = mSnapshot.withTargetTemperature(temperature);
+        }
         uploadServer("target_temperature");
     }
 
+    /**
+     * Current state as a whole; read several values from one snapshot if they have to match.
+     * @return Immutable state of the thermostat.
+     */
+    public ThermostatSnapshot getSnapshot() {
+
+        return mSnapshot;
+    }
+
     public int getCurrentTime() {
 
-        return mTime;
+        return mSnapshot.getTime();
     }
 
     public DAY getDayOfTheWeek() {
 
-        return mDayOfTheWeek;
+        return mSnapshot.getDayOfTheWeek();
     }
 
     public double getCurrentTemperature() {
 
-        return mCurrentTemperature.getTemperature(mFahrenheit);
+        return mSnapshot.getCurrentTemperature().getTemperature(mFahrenheit);
     }
 
     public double getDayTemperature() {
 
-        return mDayTemperature.getTemperature(mFahrenheit);
+        return mSnapshot.getDayTemperature().getTemperature(mFahrenheit);
     }
 
     public double getNightTemperature() {
 
-        return mNightTemperature.getTemperature(mFahrenheit);
+        return mSnapshot.getNightTemperature().getTemperature(mFahrenheit);
     }
 
     public double getTargetTemperature() {
 
-        return mTargetTemperature.getTemperature(mFahrenheit);
+        return mSnapshot.getTargetTemperature().getTemperature(mFahrenheit);
+    }
+
+    /**
+     * @return Current temperature in tenths of a degree Celsius.
+     */
+    public int getCurrentTemperatureTenths() {
+
+        return mSnapshot.getCurrentTemperature().getTenths();
+    }
+
+    /**
+     * @return Day temperature in tenths of a degree Celsius.
+     */
+    public int getDayTemperatureTenths() {
+
+        return mSnapshot.getDayTemperature().getTenths();
+    }
+
+    /**
+     * @return Night temperature in tenths of a degree Celsius.
+     */
+    public int getNightTemperatureTenths() {
+
+        return mSnapshot.getNightTemperature().getTenths();
+    }
+
+    /**
+     * @return Target temperature in tenths of a degree Celsius.
+     */
+    public int getTargetTemperatureTenths() {
+
+        return mSnapshot.getTargetTemperature().getTenths();
     }
 
     public boolean getWeekScheduleOn() {
 
-        return mWeekScheduleOn;
+        return mSnapshot.getWeekScheduleOn();
     }
 
     public Iterable<DaySchedule> getWeekSchedule() {
 
-        return mWeekSchedule;
+        return mSnapshot.getWeekSchedule();
+    }
+
+    /**
+     * Compiled week program, rebuilt only for the days that changed since the previous call.
+     * @return Timeline of the current week schedule and day / night temperatures.
+     */
+    public WeekTimeline getTimeline() {
+
+        ThermostatSnapshot snapshot = mSnapshot;
+        WeekTimeline timeline = mTimeline.rebuild(snapshot.getWeekSchedule(),
+                snapshot.getDayTemperature(), snapshot.getNightTemperature());
+        mTimeline = timeline;
+        return timeline;
     }
 
-    public Iterable<Period> getDaySchedule(DAY dayOfTheWeek) {
+    /**
+     * Temperature the week program asks for right now, computed locally so that it is known
+     * before the server reports a new target temperature.
+     * @return Day or night temperature, or the target temperature if the week program is off.
+     */
+    public double getScheduledTemperature() {
+
+        ThermostatSnapshot snapshot = mSnapshot;
+        Temperature scheduled = null;
+        if (snapshot.getWeekScheduleOn() && snapshot.getDayOfTheWeek() != null) {
+            scheduled = getTimeline().targetAt(snapshot.getDayOfTheWeek().getId(),
+                    snapshot.getTime());
+        }
+        if (scheduled == null) {
+            scheduled = snapshot.getTargetTemperature();
+        }
+        return scheduled.getTemperature(mFahrenheit);
+    }
+
+    /**
+     * Returns the periods of day temperature of a day. The iterable stays valid: every
+     * iteration goes over the schedule of the snapshot that is current when it starts.
+     * @param dayOfTheWeek Day of the week.
+     * @return Periods of day temperature.
+     */
+    public Iterable<Period> getDaySchedule(final DAY dayOfTheWeek) {
+
+        return new Iterable<Period>() {
+            @Override
+            public Iterator<Period> iterator() {
 
-        return mWeekSchedule.get(dayOfTheWeek.getId()).getSchedule();
+                return getDayPeriods(dayOfTheWeek).iterator();
+            }
+        };
+    }
+
+    /**
+     * @param dayOfTheWeek Day of the week.
+     * @return Unmodifiable list of the periods of day temperature of the day as it is now;
+     * later changes create a new list, so it can be kept without copying.
+     */
+    public List<Period> getDayPeriods(DAY dayOfTheWeek) {
+
+        return mSnapshot.getDaySchedule(dayOfTheWeek).getPeriods();
+    }
+
+    /**
+     * Send pending edits to the server right away instead of waiting for more edits of the
+     * same value. Call when the user finished an edit, e.g. a picker stopped scrolling.
+     */
+    public void commitEdits() {
+
+        if (mBound) {
+            mService.flushUploads();
+        }
+    }
+
+    /**
+     * Tell the thermostat whether the user is looking at it, so it can poll faster.
+     * Becoming visible triggers an immediate poll.
+     * @param foreground True if a screen showing thermostat data is in the foreground.
+     */
+    public void setForeground(boolean foreground) {
+
+        mPollingPolicy.setForeground(foreground);
+        if (foreground) {
+            pollWithin(0);
+        }
     }
 
     /**
@@ -221,41 +384,56 @@ public class Thermostat {
         mFahrenheit = fahrenheit;
     }
 
-    private void downloadServer() {
+    private void setDayTemperature(Temperature temperature) {
 
-        if (mBound) {
-            ParsedThermostat root = mService.getData();
-            if (root == null) {
-                Log.w(LOG_TAG, "Oops, Parsed Thermostat is null :(");
-                throw new NullPointerException(LOG_TAG + " thermostat update failed");
-            }
+        synchronized (mStateLock) {
+            mSnapshot = mSnapshot.withDayTemperature(temperature);
+        }
+        uploadServer("day_temperature");
+    }
 
-            mCurrentTemperature = root.mCurrentTemperature;
-            mTargetTemperature = root.mTargetTemperature;
-            mDayTemperature = root.mDayTemperature;
-            mNightTemperature = root.mNightTemperature;
-            mDayOfTheWeek = root.mDayOfTheWeek;
-            mTime = root.mTime;
-            mWeekScheduleOn = root.mWeekScheduleOn;
-            mWeekSchedule = root.mWeekSchedule;
-
-            for (ThermostatListener listener : mListener) {
-                listener.onThermostatUpdate(this);
-            }
+    private void setNightTemperature(Temperature temperature) {
+
+        synchronized (mStateLock) {
+            mSnapshot = mSnapshot.withNightTemperature(temperature);
+        }
+        uploadServer("night_temperature");
+    }
+
+    /**
+     * Take over a new state fetched by the client and notify the listeners.
+     * @param root State fetched from the server.
+     */
+    private void downloadServer(ParsedThermostat root) {
+
+        synchronized (mStateLock) {
+            mSnapshot = mSnapshot.withServerState(root);
+        }
+
+        for (ThermostatListener listener : mListener) {
+            listener.onThermostatUpdate(this);
+        }
+    }
+
+    /**
+     * Poll the server within {@code delay} ms, unless a poll is already due sooner.
+     * @param delay Delay in milliseconds.
+     */
+    private void pollWithin(long delay) {
+
+        ThermostatClient client = mClient;
+        if (mBound && client != null) {
+            mService.getEngine().pollWithin(client, delay);
         }
     }
 
     private void uploadServer(String uploadOption) {
 
+        mPollingPolicy.onLocalEdit();
+        pollWithin(mPollingPolicy.getMinDelay());
         if (mBound) {
-            ParsedThermostat copy = new ParsedThermostat();
-            copy.mWeekSchedule = mWeekSchedule;
-            copy.mWeekScheduleOn = mWeekScheduleOn;
-            copy.mNightTemperature = mNightTemperature;
-            copy.mDayTemperature = mDayTemperature;
-            copy.mTargetTemperature = mTargetTemperature;
-
-            mService.putData(uploadOption, copy);
+            // The snapshot never changes, so it is sent without copying
+            mService.putData(uploadOption, mSnapshot.toParsedThermostat());
         }
     }
 }
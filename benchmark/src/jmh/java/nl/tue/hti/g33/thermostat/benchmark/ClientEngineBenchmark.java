@@ -0,0 +1,190 @@
+package nl.tue.hti.g33.thermostat.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import nl.tue.hti.g33.thermostat.service.ClientEngine;
+import nl.tue.hti.g33.thermostat.service.HostSelector;
+import nl.tue.hti.g33.thermostat.service.HttpTransport;
+import nl.tue.hti.g33.thermostat.service.ThermostatClient;
+import nl.tue.hti.g33.thermostat.utils.AdaptivePollingPolicy;
+
+/**
+ * Polling many simulated thermostats through one {@link ClientEngine} with
+ * {@value #POLL_THREADS} polling threads, against a local keep-alive server. One operation
+ * starts polling a new set of thermostats and waits until every one of them was polled.
+ * @author Alex, 29.06.2015.
+ */
+@State(Scope.Benchmark)
+public class ClientEngineBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int POLL_THREADS = 2;
+    /**
+     * The first poll of a thermostat happens within the minimum delay, later polls are far
+     * beyond the end of an operation.
+     */
+    private static final long MIN_DELAY = 1;
+    private static final long MAX_DELAY = TimeUnit.MINUTES.toMillis(10);
+    private static final long TIMEOUT = 30;
+
+    @Param({ "50", "500" })
+    public int thermostats;
+
+    private ServerSocket mServer;
+    private byte[] mDocument;
+    private ClientEngine mEngine;
+    private int mRounds;
+    private final ConcurrentHashMap<String, Boolean> mPolled = new ConcurrentHashMap<>();
+    private volatile CountDownLatch mRound;
+
+    @Setup
+    public void setUp() throws IOException {
+
+        mDocument = Payloads.thermostat(Payloads.FULL);
+        mServer = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+
+                while (!mServer.isClosed()) {
+                    try {
+                        final Socket socket = mServer.accept();
+                        Thread connection = new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+
+                                serve(socket);
+                            }
+                        }, "BenchmarkConnection");
+                        connection.setDaemon(true);
+                        connection.start();
+                    } catch (IOException e) {
+                        // Server closed
+                    }
+                }
+            }
+        }, "BenchmarkServer");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        mEngine = new ClientEngine(new HttpTransport(),
+                new HostSelector("127.0.0.1:" + mServer.getLocalPort()), POLL_THREADS);
+        mEngine.setFetchListener(new ClientEngine.FetchListener() {
+            @Override
+            public void onFetchSucceeded(ThermostatClient client) {
+
+                CountDownLatch round = mRound;
+                if (round != null && mPolled.putIfAbsent(client.getId(), Boolean.TRUE) == null) {
+                    round.countDown();
+                }
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+
+        mEngine.shutdown();
+        mServer.close();
+    }
+
+    /**
+     * Add {@link #thermostats} new thermostats, wait until all of them have been polled and
+     * remove them again.
+     */
+    @Benchmark
+    public void pollAll() throws InterruptedException {
+
+        mPolled.clear();
+        CountDownLatch round = new CountDownLatch(thermostats);
+        mRound = round;
+        String prefix = mRounds++ + "-";
+        for (int i = 0; i < thermostats; i++) {
+            mEngine.addThermostat(prefix + i,
+                    new AdaptivePollingPolicy(MIN_DELAY, MAX_DELAY, 0));
+        }
+        boolean done = round.await(TIMEOUT, TimeUnit.SECONDS);
+        for (int i = 0; i < thermostats; i++) {
+            mEngine.removeThermostat(prefix + i);
+        }
+        if (!done) {
+            throw new IllegalStateException(round.getCount() + " thermostats were not polled");
+        }
+    }
+
+    /**
+     * Answer requests on one keep-alive connection until the client closes it.
+     */
+    private void serve(Socket socket) {
+
+        try {
+            BufferedReader in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), UTF_8));
+            // Headers and body in one write: two small writes stall on Nagle and delayed ACKs
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            String requestLine;
+            while ((requestLine = in.readLine()) != null) {
+                String line;
+                //noinspection StatementWithEmptyBody
+                while ((line = in.readLine()) != null && !line.isEmpty());
+                String[] request = requestLine.split(" ");
+                String path = request.length > 1 ? request[1] : "";
+                byte[] body = respond(path.substring(path.lastIndexOf('/') + 1));
+                String status = body.length > 0 ? "200 OK" : "404 Not Found";
+                out.write(("HTTP/1.1 " + status + "\r\nContent-Type: application/xml"
+                        + "\r\nContent-Length: " + body.length
+                        + "\r\nConnection: keep-alive\r\n\r\n").getBytes(UTF_8));
+                if (!request[0].equals("HEAD")) {
+                    out.write(body);
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            // Connection closed by the client
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Nothing left to clean up
+            }
+        }
+    }
+
+    private byte[] respond(String resource) {
+
+        switch (resource) {
+            case "":
+                return mDocument;
+            case "currentTemperature":
+                return "<current_temperature>20.4</current_temperature>".getBytes(UTF_8);
+            case "targetTemperature":
+                return "<target_temperature>21.0</target_temperature>".getBytes(UTF_8);
+            case "time":
+                return "<time>14:37</time>".getBytes(UTF_8);
+            case "day":
+                return "<current_day>Wednesday</current_day>".getBytes(UTF_8);
+            case "weekProgramState":
+                return "<week_program_state>on</week_program_state>".getBytes(UTF_8);
+            default:
+                return new byte[0];
+        }
+    }
+}
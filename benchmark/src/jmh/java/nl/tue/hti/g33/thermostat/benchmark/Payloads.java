@@ -0,0 +1,82 @@
+package nl.tue.hti.g33.thermostat.benchmark;
+
+import java.nio.charset.Charset;
+
+/**
+ * Thermostat documents in the format of the server.
+ * @author Alex, 04.07.2015.
+ */
+final class Payloads {
+
+    /**
+     * Week program without any day period: all switches are off.
+     */
+    static final String EMPTY = "empty";
+    /**
+     * Two day periods per day, like a working week.
+     */
+    static final String FULL = "full";
+    /**
+     * The maximum of five day periods on every day.
+     */
+    static final String FIVE_PERIODS = "five_periods";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String[] DAYS = { "Monday", "Tuesday", "Wednesday", "Thursday",
+            "Friday", "Saturday", "Sunday" };
+
+    private Payloads() {
+
+    }
+
+    /**
+     * @param kind {@link #EMPTY}, {@link #FULL} or {@link #FIVE_PERIODS}.
+     * @return Complete {@code <thermostat>} document.
+     */
+    static byte[] thermostat(String kind) {
+
+        int periods;
+        switch (kind) {
+            case EMPTY:
+                periods = 0;
+                break;
+            case FULL:
+                periods = 2;
+                break;
+            case FIVE_PERIODS:
+                periods = 5;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown payload " + kind);
+        }
+        StringBuilder document = new StringBuilder("<thermostat>\n"
+                + "<current_day>Wednesday</current_day>\n<time>14:37</time>\n"
+                + "<current_temperature>20.4</current_temperature>\n"
+                + "<target_temperature>21.0</target_temperature>\n"
+                + "<day_temperature>21.0</day_temperature>\n"
+                + "<night_temperature>17.5</night_temperature>\n"
+                + "<week_program_state>on</week_program_state>\n"
+                + "<week_program state=\"on\">\n");
+        for (String day : DAYS) {
+            document.append("<day name=\"").append(day).append("\">\n");
+            for (int i = 0; i < 5; i++) {
+                boolean on = i < periods;
+                // Periods of two hours, starting at 07:00, 10:00, 13:00, ...
+                appendSwitch(document, "day", on, on ? 7 + 3 * i : 23, on ? 0 : 59);
+                appendSwitch(document, "night", on, on ? 9 + 3 * i : 23, on ? 0 : 59);
+            }
+            document.append("</day>\n");
+        }
+        document.append("</week_program>\n</thermostat>\n");
+        return document.toString().getBytes(UTF_8);
+    }
+
+    private static void appendSwitch(StringBuilder document, String type, boolean on,
+                                     int hours, int minutes) {
+
+        document.append("<switch type=\"").append(type).append("\" state=\"")
+                .append(on ? "on" : "off").append("\">")
+                .append(hours < 10 ? "0" : "").append(hours).append(':')
+                .append(minutes < 10 ? "0" : "").append(minutes).append("</switch>\n");
+    }
+}
@@ -0,0 +1,86 @@
+package nl.tue.hti.g33.thermostat.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import nl.tue.hti.g33.thermostat.utils.DaySchedule;
+import nl.tue.hti.g33.thermostat.utils.Period;
+
+/**
+ * Editing day schedules.
+ * @author Alex, 04.07.2015.
+ */
+@State(Scope.Thread)
+public class ScheduleBenchmark {
+
+    private final Period mMorning = new Period(7, 0, 9, 0);
+    private final Period mOverlap = new Period(8, 30, 12, 0);
+    private final Period mEvening = new Period(18, 0, 23, 0);
+
+    /**
+     * Fill a day with five separate periods.
+     */
+    @Benchmark
+    public DaySchedule addSeparatePeriods() {
+
+        DaySchedule schedule = new DaySchedule();
+        for (int i = 0; i < 5; i++) {
+            schedule.addDayPeriod(new Period(7 + 3 * i, 0, 9 + 3 * i, 0));
+        }
+        return schedule;
+    }
+
+    /**
+     * Add periods that each overlap the previous one, so every addition merges.
+     */
+    @Benchmark
+    public DaySchedule addMergingPeriods() {
+
+        DaySchedule schedule = new DaySchedule();
+        for (int i = 0; i < 5; i++) {
+            schedule.addDayPeriod(new Period(7 + i, 0, 9 + i, 0));
+        }
+        return schedule;
+    }
+
+    /**
+     * Look up the state of every minute of a day with five periods.
+     */
+    @Benchmark
+    public int isDayAt(FullDay day) {
+
+        int dayMinutes = 0;
+        for (int minute = 0; minute < 24 * 60; minute++) {
+            if (day.mSchedule.isDayAt(minute)) {
+                dayMinutes++;
+            }
+        }
+        return dayMinutes;
+    }
+
+    @Benchmark
+    public boolean intersects() {
+
+        return mMorning.intersects(mOverlap) & mMorning.intersects(mEvening);
+    }
+
+    @Benchmark
+    public Period combine() {
+
+        return mMorning.combine(mOverlap);
+    }
+
+    @State(Scope.Benchmark)
+    public static class FullDay {
+
+        final DaySchedule mSchedule = new DaySchedule();
+
+        public FullDay() {
+
+            for (int i = 0; i < 5; i++) {
+                mSchedule.addDayPeriod(new Period(7 + 3 * i, 0, 9 + 3 * i, 0));
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package nl.tue.hti.g33.thermostat.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import nl.tue.hti.g33.thermostat.utils.Temperature;
+
+/**
+ * Creating and converting temperatures.
+ * @author Alex, 04.07.2015.
+ */
+@State(Scope.Thread)
+public class TemperatureBenchmark {
+
+    private final Temperature mTemperature = new Temperature(21.5, false);
+    private double mCelsius = 21.5;
+    private double mFahrenheit = 70.7;
+    private int mTenths = 215;
+
+    @Benchmark
+    public Temperature fromCelsius() {
+
+        return new Temperature(mCelsius, false);
+    }
+
+    @Benchmark
+    public Temperature fromFahrenheit() {
+
+        return new Temperature(mFahrenheit, true);
+    }
+
+    @Benchmark
+    public Temperature valueOfCelsius() {
+
+        return Temperature.valueOf(mCelsius, false);
+    }
+
+    @Benchmark
+    public Temperature valueOfFahrenheit() {
+
+        return Temperature.valueOf(mFahrenheit, true);
+    }
+
+    @Benchmark
+    public Temperature ofTenths() {
+
+        return Temperature.ofTenths(mTenths);
+    }
+
+    @Benchmark
+    public double toCelsius() {
+
+        return mTemperature.getTemperature(false);
+    }
+
+    @Benchmark
+    public double toFahrenheit() {
+
+        return mTemperature.getTemperature(true);
+    }
+}
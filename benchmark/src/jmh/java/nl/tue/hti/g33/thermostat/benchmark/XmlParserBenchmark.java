@@ -0,0 +1,69 @@
+package nl.tue.hti.g33.thermostat.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import nl.tue.hti.g33.thermostat.parser.ParsedThermostat;
+import nl.tue.hti.g33.thermostat.parser.XmlParser;
+import nl.tue.hti.g33.thermostat.utils.DaySchedule;
+
+/**
+ * Parsing and serializing complete thermostat documents.
+ * @author Alex, 04.07.2015.
+ */
+@State(Scope.Thread)
+public class XmlParserBenchmark {
+
+    @Param({ Payloads.EMPTY, Payloads.FULL, Payloads.FIVE_PERIODS })
+    public String payload;
+
+    /**
+     * Use the byte scanner, or XmlPullParser only.
+     */
+    @Param({ "true", "false" })
+    public boolean scanning;
+
+    private XmlParser mParser;
+    private byte[] mDocument;
+    private ParsedThermostat mParsed;
+
+    @Setup
+    public void setUp() {
+
+        mParser = new XmlParser();
+        mParser.setScanning(scanning);
+        mDocument = Payloads.thermostat(payload);
+        mParsed = new XmlParser().parse(mDocument);
+        if (mParsed == null) {
+            throw new IllegalStateException("Payload " + payload + " does not parse");
+        }
+    }
+
+    @Benchmark
+    public ParsedThermostat parse() {
+
+        return mParser.parse(mDocument);
+    }
+
+    /**
+     * Parse and build the schedule of every day, as the UI does after a full fetch.
+     */
+    @Benchmark
+    public void parseWithSchedule(Blackhole blackhole) {
+
+        ParsedThermostat thermostat = mParser.parse(mDocument);
+        for (DaySchedule schedule : thermostat.mWeekSchedule) {
+            blackhole.consume(schedule);
+        }
+    }
+
+    @Benchmark
+    public String serialize() {
+
+        return mParser.serialize(mParsed);
+    }
+}
@@ -0,0 +1,65 @@
+package nl.tue.hti.g33.thermostat.logging;
+
+/**
+ * Logging facade of the platform independent classes, with the same methods as
+ * {@code android.util.Log}. Messages go to the logger set with {@link #setLogger(Logger)};
+ * until then warnings and errors are printed to {@code System.err} and everything else is
+ * dropped.
+ * @author Alex, 05.07.2015.
+ */
+public final class Log {
+
+    private static final Logger STANDARD_ERROR = new Logger() {
+        @Override
+        public void log(int priority, String tag, String msg) {
+
+            if (priority >= WARN) {
+                System.err.println((priority == WARN ? "W/" : "E/") + tag + ": " + msg);
+            }
+        }
+    };
+
+    private static volatile Logger sLogger = STANDARD_ERROR;
+
+    private Log() {
+
+    }
+
+    /**
+     * @param logger Logger to send all further messages to, or null to restore the default.
+     */
+    public static void setLogger(Logger logger) {
+
+        sLogger = logger == null ? STANDARD_ERROR : logger;
+    }
+
+    public static int v(String tag, String msg) {
+
+        sLogger.log(Logger.VERBOSE, tag, msg);
+        return 0;
+    }
+
+    public static int d(String tag, String msg) {
+
+        sLogger.log(Logger.DEBUG, tag, msg);
+        return 0;
+    }
+
+    public static int i(String tag, String msg) {
+
+        sLogger.log(Logger.INFO, tag, msg);
+        return 0;
+    }
+
+    public static int w(String tag, String msg) {
+
+        sLogger.log(Logger.WARN, tag, msg);
+        return 0;
+    }
+
+    public static int e(String tag, String msg) {
+
+        sLogger.log(Logger.ERROR, tag, msg);
+        return 0;
+    }
+}
@@ -0,0 +1,23 @@
+package nl.tue.hti.g33.thermostat.logging;
+
+/**
+ * Destination of the messages logged through {@link Log}, e.g. logcat on Android.
+ * Implementations must be thread safe.
+ * @author Alex, 05.07.2015.
+ */
+public interface Logger {
+
+    int VERBOSE = 2;
+    int DEBUG = 3;
+    int INFO = 4;
+    int WARN = 5;
+    int ERROR = 6;
+
+    /**
+     * @param priority One of {@link #VERBOSE}, {@link #DEBUG}, {@link #INFO}, {@link #WARN}
+     *                 and {@link #ERROR}.
+     * @param tag Source of the message, usually the LOG_TAG of a class.
+     * @param msg Message.
+     */
+    void log(int priority, String tag, String msg);
+}
@@ -0,0 +1,220 @@
+package nl.tue.hti.g33.thermostat.parser;
+
+import nl.tue.hti.g33.thermostat.logging.Log;
+import nl.tue.hti.g33.thermostat.utils.Temperature;
+
+/**
+ * Compact binary codec of {@link PackedThermostat} snapshots, about a tenth of the size of
+ * the XML document and decoded without any text handling. Layout, big endian:
+ * <ul>
+ *     <li>magic byte {@value #MAGIC} and format version {@value #VERSION};</li>
+ *     <li>flags: bit 0 week program on, bit 1 week program known;</li>
+ *     <li>ID of the day of the week, -1 if unknown;</li>
+ *     <li>time in minutes since 00:00, 2 bytes;</li>
+ *     <li>current, target, day and night temperature in tenths of a degree, 2 bytes each,
+ *     {@link Short#MIN_VALUE} if unknown;</li>
+ *     <li>if the week program is known, a bit stream holding for every day the number of
+ *     day periods in {@value #COUNT_BITS} bits followed by the start and end of each period
+ *     in {@value #TIME_BITS} bits each.</li>
+ * </ul>
+ * Stateless and thread safe.
+ * @author Alex, 03.07.2015.
+ */
+public final class BinaryCodec implements ThermostatCodec {
+
+    private static final String LOG_TAG = "parser.BinaryCodec";
+
+    public static final String CONTENT_TYPE = "application/x-thermostat";
+
+    private static final byte MAGIC = 0x54;
+    private static final byte VERSION = 1;
+    private static final int FLAG_WEEK_PROGRAM_ON = 1;
+    private static final int FLAG_HAS_WEEK_PROGRAM = 2;
+    private static final int HEADER_SIZE = 14;
+    private static final int COUNT_BITS = 3;
+    private static final int TIME_BITS = 11;
+    private static final short UNKNOWN_TEMPERATURE = Short.MIN_VALUE;
+
+    @Override
+    public String getContentType() {
+
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public ParsedThermostat parse(byte[] data) {
+
+        PackedThermostat packed = decode(data);
+        return packed == null ? null : packed.toParsedThermostat();
+    }
+
+    @Override
+    public byte[] serialize(ParsedThermostat thermostat) {
+
+        return encode(PackedThermostat.pack(thermostat));
+    }
+
+    /**
+     * @param thermostat Snapshot to encode.
+     * @return Encoded snapshot.
+     * @throws IllegalArgumentException
+     */
+    public byte[] encode(PackedThermostat thermostat) {
+
+        int scheduleBits = 0;
+        if (thermostat.hasWeekSchedule()) {
+            for (int day = 0; day < PackedThermostat.DAYS; day++) {
+                scheduleBits += COUNT_BITS + 2 * TIME_BITS * thermostat.getPeriodCount(day);
+            }
+        }
+        byte[] out = new byte[HEADER_SIZE + (scheduleBits + 7) / 8];
+        out[0] = MAGIC;
+        out[1] = VERSION;
+        out[2] = (byte) ((thermostat.getWeekScheduleOn() ? FLAG_WEEK_PROGRAM_ON : 0)
+                | (thermostat.hasWeekSchedule() ? FLAG_HAS_WEEK_PROGRAM : 0));
+        out[3] = (byte) thermostat.getDayOfTheWeek();
+        writeShort(out, 4, thermostat.getTime());
+        writeShort(out, 6, temperature(thermostat.getCurrentTemperature()));
+        writeShort(out, 8, temperature(thermostat.getTargetTemperature()));
+        writeShort(out, 10, temperature(thermostat.getDayTemperature()));
+        writeShort(out, 12, temperature(thermostat.getNightTemperature()));
+        if (thermostat.hasWeekSchedule()) {
+            int bit = HEADER_SIZE * 8;
+            for (int day = 0; day < PackedThermostat.DAYS; day++) {
+                int count = thermostat.getPeriodCount(day);
+                bit = writeBits(out, bit, count, COUNT_BITS);
+                for (int i = 0; i < count; i++) {
+                    bit = writeBits(out, bit, thermostat.getPeriodStart(day, i), TIME_BITS);
+                    bit = writeBits(out, bit, thermostat.getPeriodEnd(day, i), TIME_BITS);
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * @param data Encoded snapshot.
+     * @return Decoded snapshot, or null if {@code data} is not a valid snapshot.
+     */
+    public PackedThermostat decode(byte[] data) {
+
+        if (data == null || data.length < HEADER_SIZE || data[0] != MAGIC) {
+            Log.e(LOG_TAG, "Not a binary thermostat snapshot");
+            return null;
+        }
+        if (data[1] != VERSION) {
+            Log.e(LOG_TAG, "Unsupported snapshot version " + data[1]);
+            return null;
+        }
+        int time = readShort(data, 4) & 0xFFFF;
+        if (data[3] < -1 || data[3] >= PackedThermostat.DAYS || time >= 24 * 60) {
+            Log.e(LOG_TAG, "Invalid day or time in snapshot");
+            return null;
+        }
+        int currentTemperature = tenths(readShort(data, 6));
+        int targetTemperature = tenths(readShort(data, 8));
+        int dayTemperature = tenths(readShort(data, 10));
+        int nightTemperature = tenths(readShort(data, 12));
+        if (!isValid(currentTemperature) || !isValid(targetTemperature)
+                || !isValid(dayTemperature) || !isValid(nightTemperature)) {
+            Log.e(LOG_TAG, "Invalid temperature in snapshot");
+            return null;
+        }
+        PackedThermostat thermostat = new PackedThermostat();
+        thermostat.setWeekScheduleOn((data[2] & FLAG_WEEK_PROGRAM_ON) != 0);
+        thermostat.setDayOfTheWeek(data[3]);
+        thermostat.setTime(time);
+        thermostat.setCurrentTemperature(currentTemperature);
+        thermostat.setTargetTemperature(targetTemperature);
+        thermostat.setDayTemperature(dayTemperature);
+        thermostat.setNightTemperature(nightTemperature);
+        if ((data[2] & FLAG_HAS_WEEK_PROGRAM) == 0) {
+            return thermostat;
+        }
+        thermostat.setHasWeekSchedule(true);
+        int bit = HEADER_SIZE * 8;
+        int end = data.length * 8;
+        try {
+            for (int day = 0; day < PackedThermostat.DAYS; day++) {
+                if (bit + COUNT_BITS > end) {
+                    throw new IllegalArgumentException(LOG_TAG + ": truncated week program");
+                }
+                int count = readBits(data, bit, COUNT_BITS);
+                bit += COUNT_BITS;
+                if (bit + 2 * TIME_BITS * count > end) {
+                    throw new IllegalArgumentException(LOG_TAG + ": truncated week program");
+                }
+                for (int i = 0; i < count; i++) {
+                    int start = readBits(data, bit, TIME_BITS);
+                    int stop = readBits(data, bit + TIME_BITS, TIME_BITS);
+                    bit += 2 * TIME_BITS;
+                    thermostat.addPeriod(day, start, stop);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            Log.e(LOG_TAG, "Invalid week program: " + e.getMessage());
+            return null;
+        }
+        return thermostat;
+    }
+
+    private static int temperature(int tenths) {
+
+        if (tenths == PackedThermostat.UNKNOWN) {
+            return UNKNOWN_TEMPERATURE;
+        }
+        if (tenths <= UNKNOWN_TEMPERATURE || tenths > Short.MAX_VALUE) {
+            Log.e(LOG_TAG, "Temperature out of range: " + tenths);
+            throw new IllegalArgumentException(LOG_TAG + ": temperature out of range");
+        }
+        return tenths;
+    }
+
+    private static int tenths(short temperature) {
+
+        return temperature == UNKNOWN_TEMPERATURE ? PackedThermostat.UNKNOWN : temperature;
+    }
+
+    /**
+     * @return True if {@code tenths} is unknown or can be turned into a {@link Temperature}.
+     */
+    private static boolean isValid(int tenths) {
+
+        return tenths == PackedThermostat.UNKNOWN
+                || tenths >= Temperature.MIN_TENTHS && tenths <= Temperature.MAX_TENTHS;
+    }
+
+    private static void writeShort(byte[] out, int offset, int value) {
+
+        out[offset] = (byte) (value >> 8);
+        out[offset + 1] = (byte) value;
+    }
+
+    private static short readShort(byte[] data, int offset) {
+
+        return (short) ((data[offset] & 0xFF) << 8 | data[offset + 1] & 0xFF);
+    }
+
+    /**
+     * Write the lowest {@code count} bits of {@code value}, most significant first.
+     * @return Position just after the written bits.
+     */
+    private static int writeBits(byte[] out, int bit, int value, int count) {
+
+        for (int i = count - 1; i >= 0; i--, bit++) {
+            if ((value >> i & 1) != 0) {
+                out[bit >> 3] |= 0x80 >>> (bit & 7);
+            }
+        }
+        return bit;
+    }
+
+    private static int readBits(byte[] data, int bit, int count) {
+
+        int value = 0;
+        for (int i = 0; i < count; i++, bit++) {
+            value = value << 1 | (data[bit >> 3] >> (7 - (bit & 7)) & 1);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,488 @@
+package nl.tue.hti.g33.thermostat.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import nl.tue.hti.g33.thermostat.logging.Log;
+import nl.tue.hti.g33.thermostat.utils.DAY;
+import nl.tue.hti.g33.thermostat.utils.DaySchedule;
+import nl.tue.hti.g33.thermostat.utils.Period;
+import nl.tue.hti.g33.thermostat.utils.Temperature;
+
+/**
+ * Compact snapshot of a thermostat, backed by primitives only: temperatures are stored in
+ * tenths of a degree Celsius and the week program as a fixed block of
+ * {@value #SLOTS_PER_DAY} minute offsets per day, i.e. the start and end of at most five day
+ * periods. {@link DaySchedule} and {@link Period} objects are only created by
+ * {@link #getWeekSchedule()} once somebody asks for them. The week program may also be left
+ * undecoded in the response buffer, see {@link #deferWeekSchedule(byte[], int, int)}.
+ * @author Alex, 01.07.2015.
+ */
+public final class PackedThermostat implements Serializable {
+
+    private static final String LOG_TAG = "parser.PackedThermostat";
+
+    /**
+     * Value of a temperature that is not known.
+     */
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+
+    public static final int DAYS = 7;
+    public static final int SLOTS_PER_DAY = 10;
+    private static final short EMPTY = -1;
+
+    private int mCurrentTemperature = UNKNOWN;
+    private int mTargetTemperature = UNKNOWN;
+    private int mDayTemperature = UNKNOWN;
+    private int mNightTemperature = UNKNOWN;
+    private int mDayOfTheWeek = -1;
+    private int mTime;
+    private boolean mWeekScheduleOn;
+    private boolean mHasWeekSchedule;
+    private final short[] mSchedule = new short[DAYS * SLOTS_PER_DAY];
+    private transient byte[] mDeferred;
+    private transient int mDeferredStart;
+    private transient int mDeferredEnd;
+
+    public PackedThermostat() {
+
+        Arrays.fill(mSchedule, EMPTY);
+    }
+
+    public PackedThermostat(PackedThermostat other) {
+
+        other.ensureSchedule();
+        mCurrentTemperature = other.mCurrentTemperature;
+        mTargetTemperature = other.mTargetTemperature;
+        mDayTemperature = other.mDayTemperature;
+        mNightTemperature = other.mNightTemperature;
+        mDayOfTheWeek = other.mDayOfTheWeek;
+        mTime = other.mTime;
+        mWeekScheduleOn = other.mWeekScheduleOn;
+        mHasWeekSchedule = other.mHasWeekSchedule;
+        System.arraycopy(other.mSchedule, 0, mSchedule, 0, mSchedule.length);
+    }
+
+    /**
+     * Pack a parsed thermostat.
+     * @param thermostat Thermostat to pack.
+     * @return Snapshot holding the same values.
+     * @throws IllegalArgumentException
+     */
+    public static PackedThermostat pack(ParsedThermostat thermostat) {
+
+        PackedThermostat packed = new PackedThermostat();
+        packed.mCurrentTemperature = tenths(thermostat.mCurrentTemperature);
+        packed.mTargetTemperature = tenths(thermostat.mTargetTemperature);
+        packed.mDayTemperature = tenths(thermostat.mDayTemperature);
+        packed.mNightTemperature = tenths(thermostat.mNightTemperature);
+        packed.mDayOfTheWeek = thermostat.mDayOfTheWeek == null
+                ? -1 : thermostat.mDayOfTheWeek.getId();
+        packed.mTime = thermostat.mTime;
+        packed.mWeekScheduleOn = thermostat.mWeekScheduleOn;
+        if (thermostat.mWeekSchedule != null) {
+            packed.mHasWeekSchedule = true;
+            int day = 0;
+            for (DaySchedule schedule : thermostat.mWeekSchedule) {
+                for (Period period : schedule.getSchedule()) {
+                    packed.addPeriod(day, period.getStartingTime(), period.getEndTime());
+                }
+                day++;
+            }
+        }
+        return packed;
+    }
+
+    /**
+     * @return Parsed thermostat whose week schedule is a lazy view of this snapshot; a
+     * deferred week program stays undecoded.
+     */
+    public ParsedThermostat toParsedThermostat() {
+
+        ParsedThermostat thermostat = new ParsedThermostat();
+        thermostat.mCurrentTemperature = temperature(mCurrentTemperature);
+        thermostat.mTargetTemperature = temperature(mTargetTemperature);
+        thermostat.mDayTemperature = temperature(mDayTemperature);
+        thermostat.mNightTemperature = temperature(mNightTemperature);
+        thermostat.mDayOfTheWeek = mDayOfTheWeek < 0 ? null : DAY.getById(mDayOfTheWeek);
+        thermostat.mTime = mTime;
+        thermostat.mWeekScheduleOn = mWeekScheduleOn;
+        thermostat.mWeekSchedule = getWeekSchedule();
+        return thermostat;
+    }
+
+    public int getCurrentTemperature() {
+
+        return mCurrentTemperature;
+    }
+
+    public void setCurrentTemperature(int tenths) {
+
+        mCurrentTemperature = tenths;
+    }
+
+    public int getTargetTemperature() {
+
+        return mTargetTemperature;
+    }
+
+    public void setTargetTemperature(int tenths) {
+
+        mTargetTemperature = tenths;
+    }
+
+    public int getDayTemperature() {
+
+        return mDayTemperature;
+    }
+
+    public void setDayTemperature(int tenths) {
+
+        mDayTemperature = tenths;
+    }
+
+    public int getNightTemperature() {
+
+        return mNightTemperature;
+    }
+
+    public void setNightTemperature(int tenths) {
+
+        mNightTemperature = tenths;
+    }
+
+    /**
+     * @return ID of the day of the week, see {@link DAY#getId()}, or -1 if unknown.
+     */
+    public int getDayOfTheWeek() {
+
+        return mDayOfTheWeek;
+    }
+
+    public void setDayOfTheWeek(int id) {
+
+        mDayOfTheWeek = id;
+    }
+
+    /**
+     * @return Time in minutes since 00:00.
+     */
+    public int getTime() {
+
+        return mTime;
+    }
+
+    public void setTime(int minutes) {
+
+        mTime = minutes;
+    }
+
+    public boolean getWeekScheduleOn() {
+
+        return mWeekScheduleOn;
+    }
+
+    public void setWeekScheduleOn(boolean on) {
+
+        mWeekScheduleOn = on;
+    }
+
+    /**
+     * @return True if the week schedule is known. Decodes a deferred week program first; one
+     * that cannot be decoded counts as not known.
+     */
+    public boolean hasWeekSchedule() {
+
+        ensureSchedule();
+        return mHasWeekSchedule;
+    }
+
+    /**
+     * Mark the week schedule as known, even if it has no periods.
+     */
+    public void setHasWeekSchedule(boolean known) {
+
+        mHasWeekSchedule = known;
+    }
+
+    /**
+     * Append a day period to a day. Periods are stored as given; overlapping ones are only
+     * merged when the schedule is turned into {@link DaySchedule} objects.
+     * @param day ID of the day.
+     * @param start Start of the period in minutes since 00:00.
+     * @param end End of the period in minutes since 00:00, at most 24:00.
+     * @throws IllegalArgumentException
+     */
+    public void addPeriod(int day, int start, int end) {
+
+        ensureSchedule();
+        if (day < 0 || day >= DAYS || start < 0 || end > 24 * 60 || start > end) {
+            throw new IllegalArgumentException("PackedThermostat: illegal period");
+        }
+        int count = getPeriodCount(day);
+        if (count == SLOTS_PER_DAY / 2) {
+            throw new IllegalArgumentException("PackedThermostat: too many periods");
+        }
+        int slot = day * SLOTS_PER_DAY + 2 * count;
+        mSchedule[slot] = (short) start;
+        mSchedule[slot + 1] = (short) end;
+        mHasWeekSchedule = true;
+    }
+
+    /**
+     * @param day ID of the day.
+     * @return Number of day periods stored for the day.
+     */
+    public int getPeriodCount(int day) {
+
+        ensureSchedule();
+        int base = day * SLOTS_PER_DAY;
+        int count = 0;
+        while (count < SLOTS_PER_DAY / 2 && mSchedule[base + 2 * count] != EMPTY) {
+            count++;
+        }
+        return count;
+    }
+
+    public int getPeriodStart(int day, int period) {
+
+        ensureSchedule();
+        return mSchedule[day * SLOTS_PER_DAY + 2 * period];
+    }
+
+    public int getPeriodEnd(int day, int period) {
+
+        ensureSchedule();
+        return mSchedule[day * SLOTS_PER_DAY + 2 * period + 1];
+    }
+
+    /**
+     * @return Lazy view of the week schedule, or null if it is not known. A deferred week
+     * program is only decoded when the view is first read; if it cannot be decoded, every
+     * day of the view is empty, see {@link #readOnlyWeekSchedule(List, List)}. Each day is
+     * turned into a {@link DaySchedule} the first time it is asked for; changes made to those
+     * objects are not written back to this snapshot. The view may be read from any thread.
+     */
+    public synchronized List<DaySchedule> getWeekSchedule() {
+
+        return mHasWeekSchedule ? new WeekScheduleView(this, null) : null;
+    }
+
+    /**
+     * Make a fetched week schedule read-only. If it is a view of a deferred week program
+     * that turns out not to be decodable when first read, {@code fallback} is read instead,
+     * so that the schedule is kept rather than emptied. A deferred program of {@code fallback}
+     * is decoded right away, so that fallbacks do not pile up.
+     * @param schedule Week schedule, e.g. from {@link #getWeekSchedule()}.
+     * @param fallback Week schedule known so far, or null.
+     * @return Read-only week schedule.
+     */
+    public static List<DaySchedule> readOnlyWeekSchedule(List<DaySchedule> schedule,
+                                                         List<DaySchedule> fallback) {
+
+        if (!(schedule instanceof WeekScheduleView)) {
+            return Collections.unmodifiableList(schedule);
+        }
+        WeekScheduleView view = (WeekScheduleView) schedule;
+        if (fallback instanceof WeekScheduleView) {
+            WeekScheduleView previous = (WeekScheduleView) fallback;
+            if (previous.mPacked == view.mPacked) {
+                return previous;
+            }
+            fallback = previous.resolve();
+        }
+        return new WeekScheduleView(view.mPacked, fallback);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PackedThermostat)) {
+            return false;
+        }
+        PackedThermostat other = (PackedThermostat) o;
+        ensureSchedule();
+        other.ensureSchedule();
+        return mCurrentTemperature == other.mCurrentTemperature
+                && mTargetTemperature == other.mTargetTemperature
+                && mDayTemperature == other.mDayTemperature
+                && mNightTemperature == other.mNightTemperature
+                && mDayOfTheWeek == other.mDayOfTheWeek
+                && mTime == other.mTime
+                && mWeekScheduleOn == other.mWeekScheduleOn
+                && mHasWeekSchedule == other.mHasWeekSchedule
+                && Arrays.equals(mSchedule, other.mSchedule);
+    }
+
+    @Override
+    public int hashCode() {
+
+        ensureSchedule();
+        int result = mCurrentTemperature;
+        result = 31 * result + mTargetTemperature;
+        result = 31 * result + mDayTemperature;
+        result = 31 * result + mNightTemperature;
+        result = 31 * result + mDayOfTheWeek;
+        result = 31 * result + mTime;
+        result = 31 * result + (mWeekScheduleOn ? 1 : 0);
+        return 31 * result + Arrays.hashCode(mSchedule);
+    }
+
+    /**
+     * Keep the {@code <week_program>} element found at {@code data[start, end)} undecoded
+     * until the schedule is first used. The buffer must not be changed afterwards.
+     * @param data Response buffer.
+     * @param start Offset of the element.
+     * @param end Offset just after the element.
+     */
+    public synchronized void deferWeekSchedule(byte[] data, int start, int end) {
+
+        Arrays.fill(mSchedule, EMPTY);
+        mDeferred = data;
+        mDeferredStart = start;
+        mDeferredEnd = end;
+        mHasWeekSchedule = true;
+    }
+
+    /**
+     * Decode a deferred week program, falling back to XmlPullParser if the scanner does not
+     * understand it. If neither can decode it, the week schedule is not known rather than
+     * empty, so that it is not taken for the program on the server.
+     */
+    private synchronized void ensureSchedule() {
+
+        byte[] data = mDeferred;
+        if (data == null) {
+            return;
+        }
+        mDeferred = null;
+        if (ThermostatScanner.scanWeekProgram(data, mDeferredStart, mDeferredEnd, this)) {
+            return;
+        }
+        Arrays.fill(mSchedule, EMPTY);
+        try {
+            ParsedThermostat parsed = new ParsedThermostat();
+            if (new XmlParser().parseValue(new ByteArrayInputStream(data, mDeferredStart,
+                    mDeferredEnd - mDeferredStart), parsed) && parsed.mWeekSchedule != null) {
+                int day = 0;
+                for (DaySchedule schedule : parsed.mWeekSchedule) {
+                    for (Period period : schedule.getSchedule()) {
+                        addPeriod(day, period.getStartingTime(), period.getEndTime());
+                    }
+                    day++;
+                }
+                return;
+            }
+        } catch (RuntimeException e) {
+            // Bad times, switches out of order or too many periods
+            Log.e(LOG_TAG, "Week program does not fit: " + e);
+        }
+        Log.e(LOG_TAG, "Could not decode the week program");
+        Arrays.fill(mSchedule, EMPTY);
+        mHasWeekSchedule = false;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+
+        ensureSchedule();
+        out.defaultWriteObject();
+    }
+
+    private static int tenths(Temperature temperature) {
+
+        return temperature == null
+                ? UNKNOWN : temperature.getTenths();
+    }
+
+    static Temperature temperature(int tenths) {
+
+        return tenths == UNKNOWN ? null : Temperature.ofTenths(tenths);
+    }
+
+    /**
+     * Week schedule materialised one day at a time, decoding a deferred week program on first
+     * use. Safe to share between threads: a day is published atomically, and if two threads
+     * build it at once both get the same object.
+     */
+    private static final class WeekScheduleView extends AbstractList<DaySchedule>
+            implements RandomAccess, Serializable {
+
+        private final PackedThermostat mPacked;
+        private volatile List<DaySchedule> mFallback;
+        private final AtomicReferenceArray<DaySchedule> mDays =
+                new AtomicReferenceArray<>(DAYS);
+
+        /**
+         * @param fallback Schedule to read if the one of {@code packed} is not known, or null
+         *                 to read empty days then.
+         */
+        WeekScheduleView(PackedThermostat packed, List<DaySchedule> fallback) {
+
+            mPacked = packed;
+            mFallback = fallback;
+        }
+
+        /**
+         * Decode the week program if needed.
+         * @return This view if its schedule is known, otherwise the schedule read instead.
+         */
+        List<DaySchedule> resolve() {
+
+            if (mPacked.hasWeekSchedule()) {
+                mFallback = null;
+                return this;
+            }
+            List<DaySchedule> fallback = mFallback;
+            return fallback != null ? fallback : this;
+        }
+
+        @Override
+        public DaySchedule get(int day) {
+
+            List<DaySchedule> schedule = resolve();
+            if (schedule != this) {
+                return schedule.get(day);
+            }
+            if (day < 0 || day >= DAYS) {
+                throw new IndexOutOfBoundsException("No day " + day);
+            }
+            return getDay(day);
+        }
+
+        @Override
+        public int size() {
+
+            List<DaySchedule> schedule = resolve();
+            return schedule != this ? schedule.size() : DAYS;
+        }
+
+        private DaySchedule getDay(int day) {
+
+            DaySchedule schedule = mDays.get(day);
+            if (schedule == null) {
+                schedule = new DaySchedule();
+                int count = mPacked.getPeriodCount(day);
+                for (int i = 0; i < count; i++) {
+                    int start = mPacked.getPeriodStart(day, i);
+                    int end = mPacked.getPeriodEnd(day, i);
+                    schedule.addDayPeriod(start, end);
+                }
+                if (!mDays.compareAndSet(day, null, schedule)) {
+                    schedule = mDays.get(day);
+                }
+            }
+            return schedule;
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package nl.tue.hti.g33.thermostat.parser;
 
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.util.List;
 
 import nl.tue.hti.g33.thermostat.utils.DAY;
 import nl.tue.hti.g33.thermostat.utils.DaySchedule;
@@ -12,7 +12,7 @@ import nl.tue.hti.g33.thermostat.utils.Temperature;
  */
 public class ParsedThermostat implements Serializable {
 
-    public ArrayList<DaySchedule> mWeekSchedule;
+    public List<DaySchedule> mWeekSchedule;
     public Temperature mDayTemperature;
     public Temperature mNightTemperature;
     public Temperature mCurrentTemperature;
@@ -0,0 +1,33 @@
+package nl.tue.hti.g33.thermostat.parser;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import nl.tue.hti.g33.thermostat.logging.Log;
+
+/**
+ * Default {@link XmlFactory}: whatever implementation {@link XmlPullParserFactory} finds on
+ * the class path, e.g. kXML 2.
+ * @author Alex, 05.07.2015.
+ */
+final class PullParserFactory implements XmlFactory {
+
+    private static final String LOG_TAG = "parser.PullParserFactory";
+
+    private XmlPullParserFactory mFactory;
+
+    @Override
+    public synchronized XmlPullParser newPullParser() {
+
+        try {
+            if (mFactory == null) {
+                mFactory = XmlPullParserFactory.newInstance();
+            }
+            return mFactory.newPullParser();
+        } catch (XmlPullParserException e) {
+            Log.e(LOG_TAG, "No XmlPullParser implementation available: " + e);
+            throw new IllegalStateException(LOG_TAG + ": no XmlPullParser", e);
+        }
+    }
+}
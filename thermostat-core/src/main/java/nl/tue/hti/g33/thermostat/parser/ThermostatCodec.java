@@ -0,0 +1,29 @@
+package nl.tue.hti.g33.thermostat.parser;
+
+/**
+ * Turns complete thermostat states into bytes and back. {@link XmlCodec} speaks the format
+ * of the server and is always available; other codecs, such as {@link BinaryCodec}, are only
+ * used for local storage or with servers that announce them through the Content-Type of
+ * their responses.
+ * @author Alex, 03.07.2015.
+ */
+public interface ThermostatCodec {
+
+    /**
+     * @return MIME type of the encoded documents, as used in Accept and Content-Type headers.
+     */
+    String getContentType();
+
+    /**
+     * @param data Encoded document.
+     * @return Decoded thermostat, or null if {@code data} is not a valid document.
+     */
+    ParsedThermostat parse(byte[] data);
+
+    /**
+     * @param thermostat Thermostat to encode.
+     * @return Encoded document.
+     * @throws IllegalArgumentException
+     */
+    byte[] serialize(ParsedThermostat thermostat);
+}
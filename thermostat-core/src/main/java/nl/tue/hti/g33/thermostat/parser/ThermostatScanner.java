@@ -0,0 +1,539 @@
+package nl.tue.hti.g33.thermostat.parser;
+
+import nl.tue.hti.g33.thermostat.utils.DAY;
+
+/**
+ * Parser specialised for the documents of the thermostat server. Scans the response bytes
+ * once, recognises the known elements by their name bytes and decodes temperatures and
+ * HH:MM times straight from the buffer into a {@link PackedThermostat}, without building
+ * strings, parser events or schedule objects.
+ * Anything outside the expected schema (comments, entities, unknown elements, other
+ * encodings) makes it give up, so that {@link XmlParser} can fall back to XmlPullParser.
+ * Not thread safe.
+ * @author Alex, 30.06.2015.
+ */
+final class ThermostatScanner {
+
+    private static final byte[] THERMOSTAT = bytes("thermostat");
+    private static final byte[] CURRENT_DAY = bytes("current_day");
+    private static final byte[] TIME = bytes("time");
+    private static final byte[] CURRENT_TEMPERATURE = bytes("current_temperature");
+    private static final byte[] TARGET_TEMPERATURE = bytes("target_temperature");
+    private static final byte[] DAY_TEMPERATURE = bytes("day_temperature");
+    private static final byte[] NIGHT_TEMPERATURE = bytes("night_temperature");
+    private static final byte[] WEEK_PROGRAM_STATE = bytes("week_program_state");
+    private static final byte[] WEEK_PROGRAM = bytes("week_program");
+    private static final byte[] DAY_ELEMENT = bytes("day");
+    private static final byte[] SWITCH = bytes("switch");
+    private static final byte[] TYPE = bytes("type");
+    private static final byte[] STATE = bytes("state");
+    private static final byte[] ON = bytes("on");
+    private static final byte[] OFF = bytes("off");
+    private static final byte[][] DAY_NAMES = new byte[DAY.values().length][];
+
+    static {
+        for (DAY day : DAY.values()) {
+            DAY_NAMES[day.getId()] = bytes(day.getFullName().toLowerCase());
+        }
+    }
+
+    private static final int SWITCHES_PER_DAY = 10;
+
+    /**
+     * Thrown when the document does not look as expected. Shared and without stack trace,
+     * since it only tells the caller to fall back to the generic parser.
+     */
+    private static final class MismatchException extends Exception {
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+
+            return this;
+        }
+    }
+
+    private static final MismatchException MISMATCH = new MismatchException();
+
+    private byte[] mData;
+    private int mPos;
+    private int mEnd;
+    private int mTypeStart, mTypeEnd;
+    private int mStateStart, mStateEnd;
+    private final int[] mSwitches = new int[SWITCHES_PER_DAY];
+    private boolean mLazyWeekProgram;
+
+    /**
+     * Enable / disable lazy decoding: when enabled, {@link #scan(byte[])} only records where
+     * the week program is in the buffer and decodes it once the schedule is used.
+     */
+    void setLazyWeekProgram(boolean lazy) {
+
+        mLazyWeekProgram = lazy;
+    }
+
+    /**
+     * Decode a {@code <week_program>} element left undecoded by a lazy scan.
+     * @return True if the element looked as expected.
+     */
+    static boolean scanWeekProgram(byte[] data, int start, int end,
+                                   PackedThermostat thermostat) {
+
+        ThermostatScanner scanner = new ThermostatScanner();
+        scanner.mData = data;
+        scanner.mPos = start;
+        scanner.mEnd = end;
+        try {
+            scanner.readWeekProgram(thermostat);
+            scanner.finish();
+            return true;
+        } catch (MismatchException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param data Complete {@code <thermostat>} document.
+     * @return Parsed thermostat, or null if the document does not look as expected.
+     */
+    PackedThermostat scan(byte[] data) {
+
+        PackedThermostat thermostat = new PackedThermostat();
+        try {
+            start(data);
+            startTag(THERMOSTAT);
+            while (true) {
+                skipWhitespace();
+                if (peek(1) == '/') {
+                    break;
+                }
+                readElement(thermostat);
+            }
+            endTag(THERMOSTAT);
+            finish();
+            return thermostat;
+        } catch (MismatchException | IllegalArgumentException e) {
+            return null;
+        } finally {
+            mData = null;
+        }
+    }
+
+    /**
+     * @param data Document holding a single thermostat value.
+     * @param thermostat Thermostat to store the value in; untouched if scanning failed.
+     * @return True if the document looked as expected.
+     */
+    boolean scanValue(byte[] data, ParsedThermostat thermostat) {
+
+        PackedThermostat value = new PackedThermostat();
+        try {
+            start(data);
+            String name = readElement(value);
+            finish();
+            copy(name, value, thermostat);
+            return true;
+        } catch (MismatchException | IllegalArgumentException e) {
+            return false;
+        } finally {
+            mData = null;
+        }
+    }
+
+    private void start(byte[] data) throws MismatchException {
+
+        mData = data;
+        mPos = 0;
+        mEnd = data.length;
+        // UTF-8 byte order mark
+        if (mEnd >= 3 && (data[0] & 0xFF) == 0xEF && (data[1] & 0xFF) == 0xBB
+                && (data[2] & 0xFF) == 0xBF) {
+            mPos = 3;
+        }
+        skipWhitespace();
+        if (peek(0) == '<' && peek(1) == '?') {
+            while (!(peek(0) == '?' && peek(1) == '>')) {
+                mPos++;
+            }
+            mPos += 2;
+        }
+        skipWhitespace();
+    }
+
+    private void finish() throws MismatchException {
+
+        skipWhitespace();
+        if (mPos != mEnd) {
+            throw MISMATCH;
+        }
+    }
+
+    /**
+     * Read one known element into {@code thermostat}.
+     * @return Name of the element, to be passed to {@link #copy}.
+     */
+    private String readElement(PackedThermostat thermostat) throws MismatchException {
+
+        expect('<');
+        int nameStart = mPos;
+        int nameEnd = skipName();
+        mPos = nameStart - 1;
+        if (matches(nameStart, nameEnd, CURRENT_DAY)) {
+            startTag(CURRENT_DAY);
+            thermostat.setDayOfTheWeek(readDay().getId());
+            endTag(CURRENT_DAY);
+            return "current_day";
+        }
+        if (matches(nameStart, nameEnd, TIME)) {
+            startTag(TIME);
+            int textStart = mPos;
+            thermostat.setTime(readTime(textStart, skipText()));
+            endTag(TIME);
+            return "time";
+        }
+        if (matches(nameStart, nameEnd, CURRENT_TEMPERATURE)) {
+            thermostat.setCurrentTemperature(readTemperature(CURRENT_TEMPERATURE));
+            return "current_temperature";
+        }
+        if (matches(nameStart, nameEnd, TARGET_TEMPERATURE)) {
+            thermostat.setTargetTemperature(readTemperature(TARGET_TEMPERATURE));
+            return "target_temperature";
+        }
+        if (matches(nameStart, nameEnd, DAY_TEMPERATURE)) {
+            thermostat.setDayTemperature(readTemperature(DAY_TEMPERATURE));
+            return "day_temperature";
+        }
+        if (matches(nameStart, nameEnd, NIGHT_TEMPERATURE)) {
+            thermostat.setNightTemperature(readTemperature(NIGHT_TEMPERATURE));
+            return "night_temperature";
+        }
+        if (matches(nameStart, nameEnd, WEEK_PROGRAM_STATE)) {
+            startTag(WEEK_PROGRAM_STATE);
+            int textStart = mPos;
+            thermostat.setWeekScheduleOn(readOnOff(textStart, skipText()));
+            endTag(WEEK_PROGRAM_STATE);
+            return "week_program_state";
+        }
+        if (matches(nameStart, nameEnd, WEEK_PROGRAM)) {
+            if (mLazyWeekProgram) {
+                int start = mPos;
+                skipElement(WEEK_PROGRAM);
+                thermostat.deferWeekSchedule(mData, start, mPos);
+            }
+            else {
+                readWeekProgram(thermostat);
+            }
+            return "week_program";
+        }
+        throw MISMATCH;
+    }
+
+    private void readWeekProgram(PackedThermostat thermostat) throws MismatchException {
+
+        startTag(WEEK_PROGRAM);
+        thermostat.setHasWeekSchedule(true);
+        for (int day = 0; day < PackedThermostat.DAYS; day++) {
+            skipWhitespace();
+            readDayProgram(thermostat, day);
+        }
+        skipWhitespace();
+        endTag(WEEK_PROGRAM);
+    }
+
+    /**
+     * Same semantics as XmlParser: only switches that are on count, and night switches
+     * before the first day switch are ignored.
+     */
+    private void readDayProgram(PackedThermostat thermostat, int day)
+            throws MismatchException {
+
+        int count = 0;
+        boolean skipNight = true;
+        startTag(DAY_ELEMENT);
+        for (int i = 0; i < SWITCHES_PER_DAY; i++) {
+            skipWhitespace();
+            startTag(SWITCH);
+            int textStart = mPos;
+            int textEnd = skipText();
+            if (readOnOff(mStateStart, mStateEnd)
+                    && (!skipNight || matches(mTypeStart, mTypeEnd, DAY_ELEMENT))) {
+                skipNight = false;
+                mSwitches[count++] = readTime(textStart, textEnd);
+            }
+            endTag(SWITCH);
+        }
+        skipWhitespace();
+        endTag(DAY_ELEMENT);
+        for (int i = 0; i < count; i += 2) {
+            int start = mSwitches[i];
+            int end = i + 1 < count ? mSwitches[i + 1] : 24 * 60;
+            thermostat.addPeriod(day, start, end);
+        }
+    }
+
+    /**
+     * @return Temperature in tenths of a degree.
+     */
+    private int readTemperature(byte[] name) throws MismatchException {
+
+        startTag(name);
+        int textStart = mPos;
+        int tenths = ValueDecoder.decodeTenths(mData, textStart, skipText() - textStart);
+        endTag(name);
+        return tenths;
+    }
+
+    /**
+     * Decode "HH:MM" into minutes since midnight.
+     */
+    private int readTime(int start, int end) {
+
+        return ValueDecoder.decodeTime(mData, start, end - start);
+    }
+
+    private DAY readDay() throws MismatchException {
+
+        int textStart = mPos;
+        int end = trimEnd(textStart, skipText());
+        int start = trimStart(textStart, end);
+        for (DAY day : DAY.values()) {
+            byte[] name = DAY_NAMES[day.getId()];
+            if (end - start != name.length) {
+                continue;
+            }
+            int i = 0;
+            while (i < name.length && (mData[start + i] | 0x20) == name[i]) {
+                i++;
+            }
+            if (i == name.length) {
+                return day;
+            }
+        }
+        throw MISMATCH;
+    }
+
+    private boolean readOnOff(int start, int end) throws MismatchException {
+
+        end = trimEnd(start, end);
+        start = trimStart(start, end);
+        if (matches(start, end, ON)) {
+            return true;
+        }
+        if (matches(start, end, OFF)) {
+            return false;
+        }
+        throw MISMATCH;
+    }
+
+    /**
+     * Read {@code <name attr="value" ...>}, remembering the "type" and "state" attributes.
+     */
+    private void startTag(byte[] name) throws MismatchException {
+
+        expect('<');
+        int nameStart = mPos;
+        if (!matches(nameStart, skipName(), name)) {
+            throw MISMATCH;
+        }
+        mTypeStart = mTypeEnd = mStateStart = mStateEnd = -1;
+        while (true) {
+            skipWhitespace();
+            if (peek(0) == '>') {
+                mPos++;
+                return;
+            }
+            int attributeStart = mPos;
+            int attributeEnd = skipName();
+            skipWhitespace();
+            expect('=');
+            skipWhitespace();
+            byte quote = peek(0);
+            if (quote != '"' && quote != '\'') {
+                throw MISMATCH;
+            }
+            int valueStart = ++mPos;
+            while (peek(0) != quote) {
+                if (mData[mPos] == '&' || mData[mPos] == '<') {
+                    throw MISMATCH;
+                }
+                mPos++;
+            }
+            int valueEnd = mPos++;
+            if (matches(attributeStart, attributeEnd, TYPE)) {
+                mTypeStart = valueStart;
+                mTypeEnd = valueEnd;
+            }
+            else if (matches(attributeStart, attributeEnd, STATE)) {
+                mStateStart = valueStart;
+                mStateEnd = valueEnd;
+            }
+        }
+    }
+
+    /**
+     * Move past the element starting at the current position and its closing tag, without
+     * looking at its content. Only the bytes of closing tags are compared, so skipping costs
+     * a fraction of decoding the element.
+     */
+    private void skipElement(byte[] name) throws MismatchException {
+
+        byte[] data = mData;
+        int last = mEnd - name.length - 2;
+        for (int i = mPos + 1; i <= last; i++) {
+            if (data[i] != '/' || data[i - 1] != '<') {
+                continue;
+            }
+            int end = i + 1 + name.length;
+            if ((data[end] == '>' || isWhitespace(data[end])) && matches(i + 1, end, name)) {
+                mPos = i - 1;
+                endTag(name);
+                return;
+            }
+        }
+        throw MISMATCH;
+    }
+
+    private void endTag(byte[] name) throws MismatchException {
+
+        expect('<');
+        expect('/');
+        int nameStart = mPos;
+        if (!matches(nameStart, skipName(), name)) {
+            throw MISMATCH;
+        }
+        skipWhitespace();
+        expect('>');
+    }
+
+    /**
+     * @return End of the name starting at the current position; the position moves past it.
+     */
+    private int skipName() throws MismatchException {
+
+        int start = mPos;
+        while (mPos < mEnd) {
+            byte b = mData[mPos];
+            if (b == '>' || b == '/' || b == '=' || isWhitespace(b)) {
+                break;
+            }
+            mPos++;
+        }
+        if (mPos == start) {
+            throw MISMATCH;
+        }
+        return mPos;
+    }
+
+    /**
+     * @return End of the character data starting at the current position, which moves to
+     * the next '&lt;'.
+     */
+    private int skipText() throws MismatchException {
+
+        while (peek(0) != '<') {
+            if (mData[mPos] == '&') {
+                throw MISMATCH;
+            }
+            mPos++;
+        }
+        return mPos;
+    }
+
+    private void skipWhitespace() {
+
+        while (mPos < mEnd && isWhitespace(mData[mPos])) {
+            mPos++;
+        }
+    }
+
+    private int trimStart(int start, int end) {
+
+        while (start < end && isWhitespace(mData[start])) {
+            start++;
+        }
+        return start;
+    }
+
+    private int trimEnd(int start, int end) {
+
+        while (end > start && isWhitespace(mData[end - 1])) {
+            end--;
+        }
+        return end;
+    }
+
+    private void expect(char c) throws MismatchException {
+
+        if (peek(0) != c) {
+            throw MISMATCH;
+        }
+        mPos++;
+    }
+
+    private byte peek(int offset) throws MismatchException {
+
+        if (mPos + offset >= mEnd) {
+            throw MISMATCH;
+        }
+        return mData[mPos + offset];
+    }
+
+    private boolean matches(int start, int end, byte[] expected) {
+
+        if (start < 0 || end - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (mData[start + i] != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(byte b) {
+
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static void copy(String name, PackedThermostat from, ParsedThermostat to) {
+
+        switch (name) {
+            case "current_day":
+                to.mDayOfTheWeek = DAY.getById(from.getDayOfTheWeek());
+                break;
+            case "time":
+                to.mTime = from.getTime();
+                break;
+            case "current_temperature":
+                to.mCurrentTemperature =
+                        PackedThermostat.temperature(from.getCurrentTemperature());
+                break;
+            case "target_temperature":
+                to.mTargetTemperature =
+                        PackedThermostat.temperature(from.getTargetTemperature());
+                break;
+            case "day_temperature":
+                to.mDayTemperature = PackedThermostat.temperature(from.getDayTemperature());
+                break;
+            case "night_temperature":
+                to.mNightTemperature =
+                        PackedThermostat.temperature(from.getNightTemperature());
+                break;
+            case "week_program_state":
+                to.mWeekScheduleOn = from.getWeekScheduleOn();
+                break;
+            case "week_program":
+                to.mWeekSchedule = from.getWeekSchedule();
+                break;
+        }
+    }
+
+    private static byte[] bytes(String ascii) {
+
+        byte[] result = new byte[ascii.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (byte) ascii.charAt(i);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,168 @@
+package nl.tue.hti.g33.thermostat.parser;
+
+/**
+ * Decodes the values of thermostat documents straight from character data, without
+ * creating intermediate strings. Overloads exist for the characters of XmlPullParser and
+ * for the raw bytes used by {@link ThermostatScanner}; surrounding whitespace is ignored.
+ * @author Alex, 30.06.2015.
+ */
+public final class ValueDecoder {
+
+    private ValueDecoder() {
+
+    }
+
+    /**
+     * Decode a time of the form "HH:MM" or "H:MM", from 00:00 to 24:00.
+     * @return Minutes since midnight.
+     * @throws NumberFormatException
+     */
+    public static int decodeTime(char[] text, int start, int length) {
+
+        return decodeTime(Source.CHARS, text, start, length);
+    }
+
+    /**
+     * Same as {@link #decodeTime(char[], int, int)} for ASCII bytes.
+     * @throws NumberFormatException
+     */
+    public static int decodeTime(byte[] text, int start, int length) {
+
+        return decodeTime(Source.BYTES, text, start, length);
+    }
+
+    /**
+     * Decode a decimal number such as "21", "-3.5" or "20.25", truncated to a tenth like
+     * {@link nl.tue.hti.g33.thermostat.utils.Temperature#valueOf(double, boolean)} does.
+     * @return Value in tenths, e.g. 205 for "20.5" and "20.59".
+     * @throws NumberFormatException
+     */
+    public static int decodeTenths(char[] text, int start, int length) {
+
+        return decodeTenths(Source.CHARS, text, start, length);
+    }
+
+    /**
+     * Same as {@link #decodeTenths(char[], int, int)} for ASCII bytes.
+     * @throws NumberFormatException
+     */
+    public static int decodeTenths(byte[] text, int start, int length) {
+
+        return decodeTenths(Source.BYTES, text, start, length);
+    }
+
+    private static int decodeTime(Source source, Object text, int start, int length) {
+
+        int end = source.trimEnd(text, start, start + length);
+        start = source.trimStart(text, start, end);
+        if (end - start < 4 || end - start > 5 || source.charAt(text, end - 3) != ':') {
+            throw new NumberFormatException("Not a time");
+        }
+        int hours = digit(source.charAt(text, start));
+        if (end - start == 5) {
+            hours = hours * 10 + digit(source.charAt(text, start + 1));
+        }
+        int minutes = digit(source.charAt(text, end - 2)) * 10
+                + digit(source.charAt(text, end - 1));
+        if (hours > 24 || minutes > 59 || hours == 24 && minutes != 0) {
+            throw new NumberFormatException("Time out of range");
+        }
+        return hours * 60 + minutes;
+    }
+
+    private static int decodeTenths(Source source, Object text, int start, int length) {
+
+        int end = source.trimEnd(text, start, start + length);
+        start = source.trimStart(text, start, end);
+        boolean negative = start < end && source.charAt(text, start) == '-';
+        if (negative || start < end && source.charAt(text, start) == '+') {
+            start++;
+        }
+        int tenths = 0;
+        int decimals = -1;
+        for (int i = start; i < end; i++) {
+            char c = source.charAt(text, i);
+            if (c == '.' && decimals < 0) {
+                decimals = 0;
+                continue;
+            }
+            int d = digit(c);
+            if (decimals < 0) {
+                if (tenths > Integer.MAX_VALUE / 100) {
+                    throw new NumberFormatException("Number too large");
+                }
+                tenths = tenths * 10 + d;
+            }
+            else if (decimals == 0) {
+                tenths = tenths * 10 + d;
+                decimals = 1;
+            }
+        }
+        if (end == start || end - start == 1 && decimals == 0) {
+            throw new NumberFormatException("Not a number");
+        }
+        if (decimals <= 0) {
+            tenths *= 10;
+        }
+        return negative ? -tenths : tenths;
+    }
+
+    private static int digit(char c) {
+
+        if (c < '0' || c > '9') {
+            throw new NumberFormatException("Not a digit: " + c);
+        }
+        return c - '0';
+    }
+
+    private static boolean isWhitespace(char c) {
+
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    /**
+     * Reads the characters of either a {@code char[]} or an ASCII {@code byte[]}, so both
+     * overloads share one decoder without wrapping the array.
+     */
+    private enum Source {
+        CHARS {
+            @Override
+            char charAt(Object text, int index) {
+
+                return ((char[]) text)[index];
+            }
+        },
+        BYTES {
+            @Override
+            char charAt(Object text, int index) {
+
+                return (char) ((byte[]) text)[index];
+            }
+        };
+
+        abstract char charAt(Object text, int index);
+
+        /**
+         * @return First index from {@code start} that is not whitespace, or {@code end}.
+         */
+        int trimStart(Object text, int start, int end) {
+
+            while (start < end && isWhitespace(charAt(text, start))) {
+                start++;
+            }
+            return start;
+        }
+
+        /**
+         * @return Index just after the last character before {@code end} that is not
+         * whitespace, or {@code start}.
+         */
+        int trimEnd(Object text, int start, int end) {
+
+            while (end > start && isWhitespace(charAt(text, end - 1))) {
+                end--;
+            }
+            return end;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package nl.tue.hti.g33.thermostat.parser;
+
+import java.util.List;
+
+import nl.tue.hti.g33.thermostat.utils.DAY;
+import nl.tue.hti.g33.thermostat.utils.DaySchedule;
+import nl.tue.hti.g33.thermostat.utils.Period;
+
+/**
+ * Renders {@code <week_program>} documents, caching the fragment of every day. A day is only
+ * rendered again when its {@link DaySchedule} was replaced or changed since the previous
+ * call, so an edit of one period re-renders one day instead of the whole week.
+ * Not thread safe.
+ * @author Alex, 02.07.2015.
+ */
+final class WeekProgramSerializer {
+
+    private static final int SWITCHES_PER_DAY = 10;
+    private static final String DAY_FILLER = "<switch type=\"day\" state=\"off\">23:59</switch>";
+    private static final String NIGHT_FILLER =
+            "<switch type=\"night\" state=\"off\">23:59</switch>";
+
+    private final DaySchedule[] mDays = new DaySchedule[DAY.values().length];
+    private final int[] mVersions = new int[DAY.values().length];
+    private final String[] mFragments = new String[DAY.values().length];
+    private final StringBuilder mBuilder = new StringBuilder(1024);
+
+    /**
+     * @param weekScheduleOn State of the week program.
+     * @param weekSchedule Schedules of all days, Monday first.
+     * @return {@code <week_program>} document.
+     */
+    String serialize(boolean weekScheduleOn, List<DaySchedule> weekSchedule) {
+
+        int length = 0;
+        int dayId = 0;
+        for (DaySchedule schedule : weekSchedule) {
+            if (mFragments[dayId] == null || mDays[dayId] != schedule
+                    || mVersions[dayId] != schedule.getVersion()) {
+                mDays[dayId] = schedule;
+                mVersions[dayId] = schedule.getVersion();
+                mFragments[dayId] = renderDay(DAY.getById(dayId), schedule);
+            }
+            length += mFragments[dayId].length();
+            dayId++;
+        }
+
+        StringBuilder document = new StringBuilder(length + 64);
+        document.append("<week_program state=\"").append(weekScheduleOn ? "on" : "off")
+                .append("\">");
+        for (int i = 0; i < dayId; i++) {
+            document.append(mFragments[i]);
+        }
+        return document.append("</week_program>").toString();
+    }
+
+    /**
+     * Render one day: a day and a night switch per period, the night switch omitted if the
+     * period lasts until midnight, padded with switches that are off to
+     * {@value #SWITCHES_PER_DAY} switches.
+     */
+    private String renderDay(DAY day, DaySchedule schedule) {
+
+        StringBuilder out = mBuilder;
+        out.setLength(0);
+        out.append("<day name=\"").append(day.getFullName()).append("\">");
+        int switchCnt = SWITCHES_PER_DAY;
+        for (Period p : schedule.getSchedule()) {
+            appendSwitch(out, "day", p.getStartingTime());
+            switchCnt--;
+            if (p.getEndTime() != 24 * 60) {
+                appendSwitch(out, "night", p.getEndTime());
+                switchCnt--;
+            }
+        }
+        while (switchCnt > 0) {
+            out.append(switchCnt % 2 == 0 ? DAY_FILLER : NIGHT_FILLER);
+            switchCnt--;
+        }
+        return out.append("</day>").toString();
+    }
+
+    private static void appendSwitch(StringBuilder out, String type, int minutes) {
+
+        out.append("<switch type=\"").append(type).append("\" state=\"on\">");
+        appendTwoDigits(out, minutes / 60);
+        out.append(':');
+        appendTwoDigits(out, minutes % 60);
+        out.append("</switch>");
+    }
+
+    private static void appendTwoDigits(StringBuilder out, int value) {
+
+        out.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+}
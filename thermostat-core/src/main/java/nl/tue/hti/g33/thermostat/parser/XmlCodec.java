@@ -0,0 +1,94 @@
+package nl.tue.hti.g33.thermostat.parser;
+
+import java.nio.charset.Charset;
+
+import nl.tue.hti.g33.thermostat.utils.Temperature;
+
+/**
+ * Codec for the {@code <thermostat>} documents of the server, backed by {@link XmlParser}.
+ * Not thread safe.
+ * @author Alex, 03.07.2015.
+ */
+public final class XmlCodec implements ThermostatCodec {
+
+    public static final String CONTENT_TYPE = "application/xml";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final XmlParser mParser;
+
+    public XmlCodec() {
+
+        this(new XmlParser());
+    }
+
+    /**
+     * @param parser Parser to use, e.g. one that is also used for single values.
+     */
+    public XmlCodec(XmlParser parser) {
+
+        mParser = parser;
+    }
+
+    @Override
+    public String getContentType() {
+
+        return CONTENT_TYPE;
+    }
+
+    @Override
+    public ParsedThermostat parse(byte[] data) {
+
+        return mParser.parse(data);
+    }
+
+    /**
+     * Write a complete {@code <thermostat>} document. Values that are not known are left out.
+     */
+    @Override
+    public byte[] serialize(ParsedThermostat thermostat) {
+
+        StringBuilder out = new StringBuilder(3072);
+        out.append("<thermostat>");
+        if (thermostat.mDayOfTheWeek != null) {
+            out.append("<current_day>").append(thermostat.mDayOfTheWeek.getFullName())
+                    .append("</current_day>");
+        }
+        out.append("<time>");
+        appendTwoDigits(out, thermostat.mTime / 60);
+        out.append(':');
+        appendTwoDigits(out, thermostat.mTime % 60);
+        out.append("</time>");
+        appendTemperature(out, "current_temperature", thermostat.mCurrentTemperature);
+        appendTemperature(out, "target_temperature", thermostat.mTargetTemperature);
+        appendTemperature(out, "day_temperature", thermostat.mDayTemperature);
+        appendTemperature(out, "night_temperature", thermostat.mNightTemperature);
+        out.append("<week_program_state>").append(thermostat.mWeekScheduleOn ? "on" : "off")
+                .append("</week_program_state>");
+        if (thermostat.mWeekSchedule != null) {
+            out.append(mParser.serialize(thermostat));
+        }
+        return out.append("</thermostat>").toString().getBytes(UTF_8);
+    }
+
+    private static void appendTemperature(StringBuilder out, String name,
+                                          Temperature temperature) {
+
+        if (temperature == null) {
+            return;
+        }
+        int tenths = temperature.getTenths();
+        out.append('<').append(name).append('>');
+        if (tenths < 0) {
+            out.append('-');
+            tenths = -tenths;
+        }
+        out.append(tenths / 10).append('.').append(tenths % 10);
+        out.append("</").append(name).append('>');
+    }
+
+    private static void appendTwoDigits(StringBuilder out, int value) {
+
+        out.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+}
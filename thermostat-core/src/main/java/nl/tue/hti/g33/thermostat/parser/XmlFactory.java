@@ -0,0 +1,17 @@
+package nl.tue.hti.g33.thermostat.parser;
+
+import org.xmlpull.v1.XmlPullParser;
+
+/**
+ * Creates the XmlPullParser instances used by {@link XmlParser}, so that each platform can
+ * plug in its own implementation. Implementations must be thread safe.
+ * @author Alex, 05.07.2015.
+ */
+public interface XmlFactory {
+
+    /**
+     * @return New parser that does not process namespaces.
+     * @throws IllegalStateException
+     */
+    XmlPullParser newPullParser();
+}
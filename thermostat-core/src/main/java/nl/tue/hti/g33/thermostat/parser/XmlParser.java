@@ -0,0 +1,388 @@
+package nl.tue.hti.g33.thermostat.parser;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+
+import nl.tue.hti.g33.thermostat.logging.Log;
+import nl.tue.hti.g33.thermostat.utils.DAY;
+import nl.tue.hti.g33.thermostat.utils.DaySchedule;
+import nl.tue.hti.g33.thermostat.utils.Temperature;
+
+/**
+ * @author Alex, 19.06.2015.
+ */
+public class XmlParser {
+
+    private static final String LOG_TAG = "parser.XmlParser";
+
+    private static volatile XmlFactory sXmlFactory = new PullParserFactory();
+
+    private XmlPullParser parser;
+    private final ThermostatScanner mScanner;
+    private final WeekProgramSerializer mWeekProgramSerializer;
+    private final int[] mTextHolder = new int[2];
+    private final int[] mSwitches = new int[10];
+    private boolean mScanning = true;
+
+    public XmlParser() {
+
+        parser = sXmlFactory.newPullParser();
+        mScanner = new ThermostatScanner();
+        mScanner.setLazyWeekProgram(true);
+        mWeekProgramSerializer = new WeekProgramSerializer();
+    }
+
+    /**
+     * Set the source of the XmlPullParser of parsers created from now on, e.g. the one of the
+     * platform. By default {@link org.xmlpull.v1.XmlPullParserFactory} is used.
+     * @param factory Factory to use, or null to restore the default.
+     */
+    public static void setXmlFactory(XmlFactory factory) {
+
+        sXmlFactory = factory == null ? new PullParserFactory() : factory;
+    }
+
+    /**
+     * Enable / disable the specialised byte scanner used by {@link #parse(byte[])} and
+     * {@link #parseValue(byte[], ParsedThermostat)}. When disabled, every document goes
+     * through XmlPullParser.
+     * @param scanning Try the byte scanner first.
+     */
+    public void setScanning(boolean scanning) {
+
+        mScanning = scanning;
+    }
+
+    /**
+     * Enable / disable lazy parsing of the week program: when enabled, documents read by the
+     * byte scanner keep the {@code <week_program>} element undecoded until the schedule is
+     * first used, e.g. by the week schedule screen of the app.
+     * @param lazy Decode the week program on demand.
+     */
+    public void setLazyWeekProgram(boolean lazy) {
+
+        mScanner.setLazyWeekProgram(lazy);
+    }
+
+    /**
+     * Parse a complete thermostat document. Documents of the expected shape are scanned
+     * directly; anything else goes through XmlPullParser.
+     * @param data Document to parse.
+     * @return Parsed thermostat, or null if parsing failed.
+     */
+    public ParsedThermostat parse(byte[] data) {
+
+        if (mScanning) {
+            PackedThermostat result = mScanner.scan(data);
+            if (result != null) {
+                return result.toParsedThermostat();
+            }
+            Log.v(LOG_TAG, "Unexpected document, falling back to XmlPullParser");
+        }
+        return parse(new ByteArrayInputStream(data));
+    }
+
+    /**
+     * Same as {@link #parse(byte[])}, returning a compact snapshot.
+     * @param data Document to parse.
+     * @return Snapshot of the thermostat, or null if parsing failed.
+     */
+    public PackedThermostat parsePacked(byte[] data) {
+
+        if (mScanning) {
+            PackedThermostat result = mScanner.scan(data);
+            if (result != null) {
+                return result;
+            }
+            Log.v(LOG_TAG, "Unexpected document, falling back to XmlPullParser");
+        }
+        ParsedThermostat result = parse(new ByteArrayInputStream(data));
+        return result == null ? null : PackedThermostat.pack(result);
+    }
+
+    /**
+     * Same as {@link #parseValue(InputStream, ParsedThermostat)}, scanning documents of the
+     * expected shape directly.
+     * @param data Document to parse.
+     * @param thermostat Thermostat to store the value in.
+     * @return True if parsing succeeded.
+     */
+    public boolean parseValue(byte[] data, ParsedThermostat thermostat) {
+
+        if (mScanning && mScanner.scanValue(data, thermostat)) {
+            return true;
+        }
+        return parseValue(new ByteArrayInputStream(data), thermostat);
+    }
+
+    public ParsedThermostat parse(InputStream inputStream) {
+
+        try {
+            parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
+            parser.setInput(inputStream, null);
+            parser.nextTag();
+            return readThermostat(parser);
+        } catch (XmlPullParserException e) {
+            Log.e(LOG_TAG, "XML parsing failed");
+            return null;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "IOException while parsing XML");
+            return null;
+        } finally {
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Failed to close input stream while parsing XML");
+            }
+        }
+    }
+
+    /**
+     * Render the week program of {@code thermostat} for uploading. Days whose schedule did
+     * not change since the previous call are taken from a cache.
+     * @param thermostat Thermostat with the week program to render.
+     * @return {@code <week_program>} document.
+     */
+    public String serialize(ParsedThermostat thermostat) {
+
+        return mWeekProgramSerializer.serialize(thermostat.mWeekScheduleOn,
+                thermostat.mWeekSchedule);
+    }
+
+    /**
+     * Parse a document holding a single thermostat value, e.g. the response of the
+     * {@code currentTemperature} endpoint, into {@code thermostat}.
+     * @param inputStream Document to parse; closed afterwards.
+     * @param thermostat Thermostat to store the value in.
+     * @return True if parsing succeeded.
+     */
+    public boolean parseValue(InputStream inputStream, ParsedThermostat thermostat) {
+
+        try {
+            parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
+            parser.setInput(inputStream, null);
+            parser.nextTag();
+            readElement(parser, thermostat);
+            return true;
+        } catch (XmlPullParserException e) {
+            Log.e(LOG_TAG, "XML parsing failed");
+            return false;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "IOException while parsing XML");
+            return false;
+        } finally {
+            try {
+                inputStream.close();
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Failed to close input stream while parsing XML");
+            }
+        }
+    }
+
+    private ParsedThermostat readThermostat(XmlPullParser parser)
+            throws IOException, XmlPullParserException {
+
+        ParsedThermostat thermostat = new ParsedThermostat();
+
+        parser.require(XmlPullParser.START_TAG, null, "thermostat");
+        while (parser.next() != XmlPullParser.END_TAG) {
+            if (parser.getEventType() != XmlPullParser.START_TAG) {
+                continue;
+            }
+            readElement(parser, thermostat);
+        }
+        return thermostat;
+    }
+
+    private void readElement(XmlPullParser parser, ParsedThermostat thermostat)
+            throws IOException, XmlPullParserException {
+
+        String name = parser.getName();
+        switch (name) {
+            case "current_day":
+                thermostat.mDayOfTheWeek = readDay(parser);
+                break;
+            case "time":
+                thermostat.mTime = readTime(parser);
+                break;
+            case "current_temperature":
+                thermostat.mCurrentTemperature = readCurrentTemperature(parser);
+                break;
+            case "target_temperature":
+                thermostat.mTargetTemperature = readTargetTemperature(parser);
+                break;
+            case "day_temperature":
+                thermostat.mDayTemperature = readDayTemperature(parser);
+                break;
+            case "night_temperature":
+                thermostat.mNightTemperature = readNightTemperature(parser);
+                break;
+            case "week_program_state":
+                thermostat.mWeekScheduleOn = readWeekProgramState(parser);
+                break;
+            case "week_program":
+                thermostat.mWeekSchedule = readWeekProgram(parser);
+                break;
+            default:
+                throw new XmlPullParserException("Ill-formed XML given to parse");
+        }
+    }
+
+    private DAY readDay(XmlPullParser parser) throws IOException, XmlPullParserException {
+
+        parser.require(XmlPullParser.START_TAG, null, "current_day");
+        String day = readText(parser);
+        parser.require(XmlPullParser.END_TAG, null, "current_day");
+        return DAY.getByName(day);
+    }
+
+    private int readTime(XmlPullParser parser) throws IOException, XmlPullParserException {
+
+        parser.require(XmlPullParser.START_TAG, null, "time");
+        int time = readTimeText(parser);
+        parser.require(XmlPullParser.END_TAG, null, "time");
+        return time;
+    }
+
+    private Temperature readCurrentTemperature(XmlPullParser parser)
+            throws IOException, XmlPullParserException {
+
+        parser.require(XmlPullParser.START_TAG, null, "current_temperature");
+        int currentTemperature = readTenthsText(parser);
+        parser.require(XmlPullParser.END_TAG, null, "current_temperature");
+        return Temperature.ofTenths(currentTemperature);
+    }
+
+    private Temperature readTargetTemperature(XmlPullParser parser)
+            throws IOException, XmlPullParserException {
+
+        parser.require(XmlPullParser.START_TAG, null, "target_temperature");
+        int targetTemperature = readTenthsText(parser);
+        parser.require(XmlPullParser.END_TAG, null, "target_temperature");
+        return Temperature.ofTenths(targetTemperature);
+    }
+
+    private Temperature readDayTemperature(XmlPullParser parser)
+            throws IOException, XmlPullParserException {
+
+        parser.require(XmlPullParser.START_TAG, null, "day_temperature");
+        int dayTemperature = readTenthsText(parser);
+        parser.require(XmlPullParser.END_TAG, null, "day_temperature");
+        return Temperature.ofTenths(dayTemperature);
+    }
+
+    private Temperature readNightTemperature(XmlPullParser parser)
+            throws IOException, XmlPullParserException {
+
+        parser.require(XmlPullParser.START_TAG, null, "night_temperature");
+        int nightTemperature = readTenthsText(parser);
+        parser.require(XmlPullParser.END_TAG, null, "night_temperature");
+        return Temperature.ofTenths(nightTemperature);
+    }
+
+    private boolean readWeekProgramState(XmlPullParser parser)
+            throws IOException, XmlPullParserException {
+
+        parser.require(XmlPullParser.START_TAG, null, "week_program_state");
+        String state = readText(parser);
+        parser.require(XmlPullParser.END_TAG, null, "week_program_state");
+        return onOffToBoolean(state);
+    }
+
+    private ArrayList<DaySchedule> readWeekProgram(XmlPullParser parser)
+            throws IOException, XmlPullParserException {
+
+        ArrayList<DaySchedule> weekSchedule = new ArrayList<>();
+
+        parser.require(XmlPullParser.START_TAG, null, "week_program");
+        for (int i = 0; i < 7; i++) {
+            parser.nextTag();
+            DaySchedule schedule = readDayProgram(parser);
+            weekSchedule.add(schedule);
+        }
+        parser.nextTag();
+        parser.require(XmlPullParser.END_TAG, null, "week_program");
+        return weekSchedule;
+    }
+
+    private DaySchedule readDayProgram(XmlPullParser parser)
+            throws IOException, XmlPullParserException {
+
+        DaySchedule schedule = new DaySchedule();
+        int l = 0;
+        boolean skipNight = true;
+        parser.require(XmlPullParser.START_TAG, null, "day");
+        for (int i = 0; i < 10; i++) {
+            parser.nextTag();
+            parser.require(XmlPullParser.START_TAG, null, "switch");
+            if (onOffToBoolean(parser.getAttributeValue(null, "state"))
+                    && (!skipNight || parser.getAttributeValue(null, "type").equals("day"))) {
+                skipNight = false;
+                mSwitches[l++] = readTimeText(parser);
+            }
+            else {
+                //noinspection StatementWithEmptyBody
+                while (parser.next() != XmlPullParser.END_TAG);
+            }
+            parser.require(XmlPullParser.END_TAG, null, "switch");
+        }
+        parser.nextTag();
+        parser.require(XmlPullParser.END_TAG, null, "day");
+        for (int i = 0; i < l; i += 2) {
+            int start = mSwitches[i];
+            int end = i + 1 < l ? mSwitches[i + 1] : 24 * 60;
+            schedule.addDayPeriod(start, end);
+        }
+        return schedule;
+    }
+
+    /**
+     * Like {@link #readText(XmlPullParser)}, decoding an "HH:MM" time from the parser's
+     * character buffer without creating a string.
+     */
+    private int readTimeText(XmlPullParser parser) throws IOException, XmlPullParserException {
+
+        if (parser.next() != XmlPullParser.TEXT) {
+            throw new XmlPullParserException("Time expected");
+        }
+        char[] text = parser.getTextCharacters(mTextHolder);
+        int time = ValueDecoder.decodeTime(text, mTextHolder[0], mTextHolder[1]);
+        parser.nextTag();
+        return time;
+    }
+
+    /**
+     * Like {@link #readText(XmlPullParser)}, decoding a temperature in tenths of a degree
+     * from the parser's character buffer without creating a string.
+     */
+    private int readTenthsText(XmlPullParser parser) throws IOException, XmlPullParserException {
+
+        if (parser.next() != XmlPullParser.TEXT) {
+            throw new XmlPullParserException("Number expected");
+        }
+        char[] text = parser.getTextCharacters(mTextHolder);
+        int tenths = ValueDecoder.decodeTenths(text, mTextHolder[0], mTextHolder[1]);
+        parser.nextTag();
+        return tenths;
+    }
+
+    private String readText(XmlPullParser parser) throws IOException, XmlPullParserException {
+
+        String result = "";
+        if (parser.next() == XmlPullParser.TEXT) {
+            result = parser.getText();
+            parser.nextTag();
+        }
+        return result;
+    }
+
+    private boolean onOffToBoolean(String s) {
+
+        return s.equals("on");
+    }
+}
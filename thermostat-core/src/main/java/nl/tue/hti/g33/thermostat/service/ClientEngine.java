@@ -0,0 +1,282 @@
+package nl.tue.hti.g33.thermostat.service;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import nl.tue.hti.g33.thermostat.logging.Log;
+import nl.tue.hti.g33.thermostat.parser.ParsedThermostat;
+import nl.tue.hti.g33.thermostat.utils.PollingPolicy;
+
+/**
+ * Polls any number of thermostats with a small shared thread pool instead of a thread per
+ * thermostat. Every {@link ThermostatClient} keeps its own state and polling policy; the
+ * engine only owns the scheduler, the keep-alive transport and the host selector. Poll
+ * delays are jittered by ±{@value #JITTER_PERCENT}%, within the bounds of the policy, and
+ * the first polls are spread over the minimum delay, so that many thermostats do not hit the
+ * server in bursts.
+ * @author Alex, 29.06.2015.
+ */
+public class ClientEngine {
+
+    private static final String LOG_TAG = "service.ClientEngine";
+
+    private static final int JITTER_PERCENT = 10;
+    private static final int HEDGE_THREADS = 2;
+
+    /**
+     * Notified after every successful poll of any thermostat, modified or not.
+     */
+    public interface FetchListener {
+
+        void onFetchSucceeded(ThermostatClient client);
+    }
+
+    private final HttpTransport mTransport;
+    private final HostSelector mHosts;
+    private final ScheduledThreadPoolExecutor mScheduler;
+    private final ExecutorService mHedgeExecutor;
+    private final ConcurrentHashMap<String, ThermostatClient> mClients;
+    private final Random mRandom;
+    private volatile FetchListener mFetchListener;
+
+    /**
+     * @param transport Transport for all requests.
+     * @param hosts Servers to choose from.
+     * @param threads Number of polling threads.
+     * @throws IllegalArgumentException
+     */
+    public ClientEngine(HttpTransport transport, HostSelector hosts, int threads) {
+
+        if (threads < 1) {
+            Log.e(LOG_TAG, "At least one polling thread is needed");
+            throw new IllegalArgumentException(LOG_TAG + ": constructor failed");
+        }
+        mTransport = transport;
+        mHosts = hosts;
+        mScheduler = new ScheduledThreadPoolExecutor(threads,
+                new NamedThreadFactory("WebFetcher"));
+        mHedgeExecutor = Executors.newFixedThreadPool(HEDGE_THREADS,
+                new NamedThreadFactory("HedgedFetch"));
+        mClients = new ConcurrentHashMap<>();
+        mRandom = new Random();
+    }
+
+    /**
+     * Start polling a thermostat. The first poll happens at a random moment within the
+     * minimum delay of {@code policy}.
+     * @param id Thermostat ID on the server.
+     * @param policy Decides how often the thermostat is polled.
+     * @return Client of the thermostat; the existing one if it is already polled.
+     */
+    public ThermostatClient addThermostat(String id, PollingPolicy policy) {
+
+        ThermostatClient client = new ThermostatClient(this, id, policy);
+        ThermostatClient existing = mClients.putIfAbsent(id, client);
+        if (existing != null) {
+            return existing;
+        }
+        synchronized (client.mScheduleLock) {
+            schedule(client, (long) (mRandom.nextDouble() * policy.getMinDelay()));
+        }
+        return client;
+    }
+
+    /**
+     * @param id Thermostat ID on the server.
+     * @return Client of the thermostat, or null if it is not polled.
+     */
+    public ThermostatClient getThermostat(String id) {
+
+        return mClients.get(id);
+    }
+
+    /**
+     * Stop polling a thermostat.
+     * @param id Thermostat ID on the server.
+     */
+    public void removeThermostat(String id) {
+
+        ThermostatClient client = mClients.remove(id);
+        if (client == null) {
+            return;
+        }
+        synchronized (client.mScheduleLock) {
+            client.mPollGeneration++;
+            if (client.mNextPoll != null) {
+                client.mNextPoll.cancel(false);
+                client.mNextPoll = null;
+            }
+        }
+    }
+
+    public int size() {
+
+        return mClients.size();
+    }
+
+    /**
+     * @return Successful polls of all thermostats so far.
+     */
+    public long getPollCount() {
+
+        long count = 0;
+        for (ThermostatClient client : mClients.values()) {
+            count += client.getPollCount();
+        }
+        return count;
+    }
+
+    /**
+     * @return Successful polls of all thermostats that found nothing changed.
+     */
+    public long getUnchangedCount() {
+
+        long count = 0;
+        for (ThermostatClient client : mClients.values()) {
+            count += client.getUnchangedCount();
+        }
+        return count;
+    }
+
+    /**
+     * Make sure {@code client} is polled within {@code delay} ms; a poll that is already
+     * scheduled earlier is kept.
+     * @param client Client of this engine.
+     * @param delay Longest acceptable delay in milliseconds, 0 to poll right away.
+     */
+    public void pollWithin(ThermostatClient client, long delay) {
+
+        synchronized (client.mScheduleLock) {
+            if (mClients.get(client.getId()) != client) {
+                return;
+            }
+            if (client.mNextPoll != null) {
+                if (client.mNextPoll.getDelay(TimeUnit.MILLISECONDS) <= delay) {
+                    return;
+                }
+                client.mNextPoll.cancel(false);
+            }
+            schedule(client, delay);
+        }
+    }
+
+    /**
+     * Send a cheap request to every unhealthy host, so that it can become healthy again
+     * without real polls being sent to it.
+     */
+    public void probeHosts() {
+
+        if (mClients.isEmpty()) {
+            return;
+        }
+        ThermostatClient client = mClients.values().iterator().next();
+        for (String host : mHosts.getUnhealthy()) {
+            Log.v(LOG_TAG, "Probing " + host);
+            client.probe(host);
+        }
+    }
+
+    /**
+     * Run {@code task} every {@code interval} ms on the polling threads.
+     */
+    public void scheduleWithFixedDelay(Runnable task, long interval) {
+
+        mScheduler.scheduleWithFixedDelay(task, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public void setFetchListener(FetchListener listener) {
+
+        mFetchListener = listener;
+    }
+
+    /**
+     * Stop all polling. The engine cannot be used afterwards.
+     */
+    public void shutdown() {
+
+        mClients.clear();
+        mScheduler.shutdownNow();
+        mHedgeExecutor.shutdownNow();
+    }
+
+    HttpTransport getTransport() {
+
+        return mTransport;
+    }
+
+    HostSelector getHosts() {
+
+        return mHosts;
+    }
+
+    ExecutorService getHedgeExecutor() {
+
+        return mHedgeExecutor;
+    }
+
+    void onFetchSucceeded(ThermostatClient client) {
+
+        FetchListener listener = mFetchListener;
+        if (listener != null) {
+            listener.onFetchSucceeded(client);
+        }
+    }
+
+    /**
+     * Replace the scheduled poll of {@code client}. Must hold the schedule lock of the client.
+     */
+    private void schedule(ThermostatClient client, long delay) {
+
+        client.mNextPoll = mScheduler.schedule(new PollTask(client, ++client.mPollGeneration),
+                delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return {@code delay} jittered, but still within the bounds of {@code policy}.
+     */
+    private long jitter(long delay, PollingPolicy policy) {
+
+        double factor = 1 + JITTER_PERCENT / 100.0 * (2 * mRandom.nextDouble() - 1);
+        long jittered = (long) (delay * factor);
+        return Math.max(policy.getMinDelay(), Math.min(jittered, policy.getMaxDelay()));
+    }
+
+    /**
+     * Polls one thermostat and schedules its next poll according to its policy.
+     */
+    private class PollTask implements Runnable {
+
+        private final ThermostatClient mClient;
+        private final int mGeneration;
+
+        PollTask(ThermostatClient client, int generation) {
+
+            mClient = client;
+            mGeneration = generation;
+        }
+
+        @Override
+        public void run() {
+
+            boolean changed = false;
+            try {
+                ParsedThermostat result = mClient.poll();
+                changed = result != null && result != ThermostatClient.NOT_MODIFIED;
+            } finally {
+                synchronized (mClient.mScheduleLock) {
+                    // Unless a poll requested meanwhile replaced this one, or polling stopped
+                    if (mClient.mPollGeneration == mGeneration
+                            && mClients.get(mClient.getId()) == mClient
+                            && !mScheduler.isShutdown()) {
+                        PollingPolicy policy = mClient.getPollingPolicy();
+                        schedule(mClient, jitter(policy.nextDelay(changed), policy));
+                    }
+                }
+            }
+        }
+    }
+}
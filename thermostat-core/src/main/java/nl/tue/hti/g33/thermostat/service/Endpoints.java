@@ -0,0 +1,110 @@
+package nl.tue.hti.g33.thermostat.service;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import nl.tue.hti.g33.thermostat.logging.Log;
+
+/**
+ * Immutable table of the addresses of all resources of one thermostat on one host.
+ * Built once per host and thermostat, so finding the address of a request allocates nothing
+ * and concurrent polls and uploads cannot corrupt each other's addresses.
+ * @author Alex, 30.06.2015.
+ */
+public final class Endpoints {
+
+    private static final String LOG_TAG = "service.Endpoints";
+
+    static final String COURSE_URL = "2id40-ws";
+
+    /**
+     * Resources of a thermostat on the server.
+     */
+    public enum Resource {
+        THERMOSTAT(""),
+        WEEK_PROGRAM("weekProgram"),
+        WEEK_PROGRAM_STATE("weekProgramState"),
+        TARGET_TEMPERATURE("targetTemperature"),
+        CURRENT_TEMPERATURE("currentTemperature"),
+        NIGHT_TEMPERATURE("nightTemperature"),
+        DAY_TEMPERATURE("dayTemperature"),
+        TIME("time"),
+        DAY_OF_THE_WEEK("day");
+
+        private final String mPath;
+
+        Resource(String path) {
+
+            mPath = path;
+        }
+
+        public String getPath() {
+
+            return mPath;
+        }
+    }
+
+    private final String mHost;
+    private final String mThermostatId;
+    private final URL[] mUrls;
+    private final String[] mAddresses;
+    private final String[] mPaths;
+
+    /**
+     * @param host Host, optionally with a port, e.g. "wwwis.win.tue.nl".
+     * @param thermostatId Thermostat ID on the server.
+     * @throws IllegalArgumentException
+     */
+    public Endpoints(String host, String thermostatId) {
+
+        mHost = host;
+        mThermostatId = thermostatId;
+        Resource[] resources = Resource.values();
+        mUrls = new URL[resources.length];
+        mAddresses = new String[resources.length];
+        mPaths = new String[resources.length];
+        for (Resource resource : resources) {
+            String path = "/" + COURSE_URL + "/" + thermostatId + "/" + resource.getPath();
+            String address = "http://" + host + path;
+            try {
+                mUrls[resource.ordinal()] = new URL(address);
+            } catch (MalformedURLException e) {
+                Log.e(LOG_TAG, "Illegal address " + address);
+                throw new IllegalArgumentException(LOG_TAG + ": constructor failed");
+            }
+            mAddresses[resource.ordinal()] = address;
+            mPaths[resource.ordinal()] = path;
+        }
+    }
+
+    public String getHost() {
+
+        return mHost;
+    }
+
+    public String getThermostatId() {
+
+        return mThermostatId;
+    }
+
+    public URL getUrl(Resource resource) {
+
+        return mUrls[resource.ordinal()];
+    }
+
+    /**
+     * @return Same as {@link #getUrl(Resource)}, as a string.
+     */
+    public String getAddress(Resource resource) {
+
+        return mAddresses[resource.ordinal()];
+    }
+
+    /**
+     * @return Path of the resource, the same on every host.
+     */
+    public String getPath(Resource resource) {
+
+        return mPaths[resource.ordinal()];
+    }
+}
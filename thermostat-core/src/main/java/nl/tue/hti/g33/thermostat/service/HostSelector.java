@@ -0,0 +1,174 @@
+package nl.tue.hti.g33.thermostat.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import nl.tue.hti.g33.thermostat.logging.Log;
+
+/**
+ * Keeps a rolling estimate of latency and error rate for every server and picks the best one.
+ * A host becomes unhealthy once its error rate exceeds {@value #MAX_ERROR_RATE}; it is
+ * healthy again after successful requests, e.g. background probes, bring the rate back down.
+ * @author Alex, 27.06.2015.
+ */
+public class HostSelector {
+
+    private static final String LOG_TAG = "service.HostSelector";
+
+    private static final double ALPHA = 0.3;
+    private static final double MAX_ERROR_RATE = 0.5;
+    private static final int SAMPLES = 32;
+    private static final int MIN_SAMPLES_FOR_BUDGET = 8;
+
+    private static class HostStats {
+
+        private final String mHost;
+        private double mLatency;
+        private double mErrorRate;
+        private boolean mHealthy = true;
+        private final long[] mSamples = new long[SAMPLES];
+        private int mSampleCount;
+        private int mNextSample;
+
+        HostStats(String host) {
+
+            mHost = host;
+        }
+    }
+
+    private final HostStats[] mStats;
+
+    /**
+     * @param hosts Hosts in order of preference when nothing is known about them yet.
+     * @throws IllegalArgumentException
+     */
+    public HostSelector(String... hosts) {
+
+        if (hosts.length == 0) {
+            Log.e(LOG_TAG, "At least one host is needed");
+            throw new IllegalArgumentException(LOG_TAG + ": constructor failed");
+        }
+        mStats = new HostStats[hosts.length];
+        for (int i = 0; i < hosts.length; i++) {
+            mStats[i] = new HostStats(hosts[i]);
+        }
+    }
+
+    /**
+     * @return The healthy host with the lowest latency, or the least failing one if none
+     * is healthy.
+     */
+    public synchronized String getPreferred() {
+
+        HostStats best = null;
+        for (HostStats stats : mStats) {
+            if (stats.mHealthy && (best == null || estimate(stats) < estimate(best))) {
+                best = stats;
+            }
+        }
+        if (best == null) {
+            best = mStats[0];
+            for (HostStats stats : mStats) {
+                if (stats.mErrorRate < best.mErrorRate) {
+                    best = stats;
+                }
+            }
+        }
+        return best.mHost;
+    }
+
+    /**
+     * @param host Host already in use.
+     * @return Fastest other healthy host, or null if there is none.
+     */
+    public synchronized String getAlternative(String host) {
+
+        HostStats best = null;
+        for (HostStats stats : mStats) {
+            if (stats.mHealthy && !stats.mHost.equals(host)
+                    && (best == null || estimate(stats) < estimate(best))) {
+                best = stats;
+            }
+        }
+        return best == null ? null : best.mHost;
+    }
+
+    /**
+     * @return Hosts that should be probed in the background.
+     */
+    public synchronized List<String> getUnhealthy() {
+
+        ArrayList<String> unhealthy = new ArrayList<>();
+        for (HostStats stats : mStats) {
+            if (!stats.mHealthy) {
+                unhealthy.add(stats.mHost);
+            }
+        }
+        return unhealthy;
+    }
+
+    /**
+     * Record the outcome of a request.
+     * @param host Host the request went to.
+     * @param latency Time until the response arrived, in milliseconds.
+     * @param success False if the request failed or the server reported an error.
+     */
+    public synchronized void report(String host, long latency, boolean success) {
+
+        HostStats stats = find(host);
+        if (stats == null) {
+            return;
+        }
+        if (success) {
+            stats.mLatency = (stats.mSampleCount == 0 ? latency
+                    : (1 - ALPHA) * stats.mLatency + ALPHA * latency);
+            stats.mErrorRate = (1 - ALPHA) * stats.mErrorRate;
+            stats.mSamples[stats.mNextSample] = latency;
+            stats.mNextSample = (stats.mNextSample + 1) % SAMPLES;
+            stats.mSampleCount = Math.min(stats.mSampleCount + 1, SAMPLES);
+        }
+        else {
+            stats.mErrorRate = (1 - ALPHA) * stats.mErrorRate + ALPHA;
+        }
+        boolean healthy = stats.mErrorRate < MAX_ERROR_RATE;
+        if (healthy != stats.mHealthy) {
+            Log.w(LOG_TAG, host + " is now " + (healthy ? "healthy" : "unhealthy"));
+            stats.mHealthy = healthy;
+        }
+    }
+
+    /**
+     * Latency budget after which a hedged request to another host is worth it.
+     * @param host Host of the first request.
+     * @return 95th percentile of recent latencies in milliseconds, or -1 if too few are known.
+     */
+    public synchronized long getHedgeDelay(String host) {
+
+        HostStats stats = find(host);
+        if (stats == null || stats.mSampleCount < MIN_SAMPLES_FOR_BUDGET) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(stats.mSamples, stats.mSampleCount);
+        Arrays.sort(sorted);
+        return sorted[(int) Math.ceil(0.95 * sorted.length) - 1];
+    }
+
+    /**
+     * Hosts without any successful request are assumed to be slower than all measured ones.
+     */
+    private static double estimate(HostStats stats) {
+
+        return stats.mSampleCount == 0 ? Double.MAX_VALUE : stats.mLatency;
+    }
+
+    private HostStats find(String host) {
+
+        for (HostStats stats : mStats) {
+            if (stats.mHost.equals(host)) {
+                return stats;
+            }
+        }
+        return null;
+    }
+}
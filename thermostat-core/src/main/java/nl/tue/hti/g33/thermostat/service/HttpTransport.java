@@ -0,0 +1,148 @@
+package nl.tue.hti.g33.thermostat.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import nl.tue.hti.g33.thermostat.logging.Log;
+
+/**
+ * Keep-alive HTTP transport shared by all requests to the thermostat servers.
+ * {@link HttpURLConnection} keeps a pool of idle sockets per host, but a socket only goes
+ * back to it once the response body has been read to the end and its stream closed;
+ * {@link HttpURLConnection#disconnect()} closes the socket for good. Connections opened
+ * here must therefore always be finished with {@link #readBody(HttpURLConnection)} or
+ * {@link #release(HttpURLConnection, boolean)}; only connections that never got a response
+ * are disconnected.
+ * @author Alex, 23.06.2015.
+ */
+public class HttpTransport {
+
+    private static final String LOG_TAG = "service.HttpTransport";
+
+    private static final int CONNECT_TIMEOUT = 5000;
+    private static final int READ_TIMEOUT = 5000;
+    private static final int MAX_IDLE_CONNECTIONS = 4;
+    private static final int BUFFER_SIZE = 4096;
+
+    private static final ThreadLocal<byte[]> sDrainBuffer = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
+    public HttpTransport() {
+
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", Integer.toString(MAX_IDLE_CONNECTIONS));
+    }
+
+    /**
+     * Open a connection which may reuse an idle socket to the same host.
+     * @param url Address to connect to.
+     * @param method HTTP method, e.g. "GET" or "PUT".
+     * @return Not yet connected connection.
+     * @throws IOException
+     */
+    public HttpURLConnection open(URL url, String method) throws IOException {
+
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        connection.setRequestProperty("Connection", "keep-alive");
+        return connection;
+    }
+
+    /**
+     * Read the whole response body and hand the socket back to the pool.
+     * @param connection Connection with a successful response.
+     * @return Response body.
+     * @throws IOException
+     */
+    public byte[] readBody(HttpURLConnection connection) throws IOException {
+
+        InputStream in = connection.getInputStream();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Drain whatever is left of the response so the socket can be reused. Safe to call on
+     * connections whose body was already read. Connections without a response are
+     * disconnected instead: asking them for a stream would connect once more.
+     * @param connection Connection to release, may be null.
+     * @param responded True if {@link HttpURLConnection#getResponseCode()} returned.
+     */
+    public void release(HttpURLConnection connection, boolean responded) {
+
+        if (connection == null) {
+            return;
+        }
+        if (!responded) {
+            connection.disconnect();
+            return;
+        }
+        InputStream in;
+        try {
+            in = connection.getInputStream();
+        } catch (IOException e) {
+            in = connection.getErrorStream();
+        }
+        if (in == null) {
+            return;
+        }
+        try {
+            byte[] buffer = sDrainBuffer.get();
+            //noinspection StatementWithEmptyBody
+            while (in.read(buffer) != -1);
+        } catch (IOException e) {
+            // Body already consumed by readBody() or the socket is broken; nothing to return
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                Log.v(LOG_TAG, "Could not close response stream: " + e);
+            }
+        }
+    }
+
+    /**
+     * Open a connection to {@code host} in the background so that the first real request
+     * does not pay for the TCP handshake.
+     * @param url Any cheap address on the host to warm up.
+     */
+    public void warmUp(final URL url) {
+
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+
+                HttpURLConnection connection = null;
+                boolean responded = false;
+                try {
+                    connection = open(url, "HEAD");
+                    connection.getResponseCode();
+                    responded = true;
+                } catch (IOException e) {
+                    Log.w(LOG_TAG, "Warming up " + url.getHost() + " failed: " + e);
+                } finally {
+                    release(connection, responded);
+                }
+            }
+        }, "ConnectionWarmUp").start();
+    }
+}
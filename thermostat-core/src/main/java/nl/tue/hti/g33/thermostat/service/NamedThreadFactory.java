@@ -0,0 +1,27 @@
+package nl.tue.hti.g33.thermostat.service;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates daemon threads named "{@code name} #n", so they are easy to tell apart in traces.
+ * @author Alex, 27.06.2015.
+ */
+public class NamedThreadFactory implements ThreadFactory {
+
+    private final String mName;
+    private final AtomicInteger mCount = new AtomicInteger(1);
+
+    public NamedThreadFactory(String name) {
+
+        mName = name;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+
+        Thread thread = new Thread(r, mName + " #" + mCount.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,129 @@
+package nl.tue.hti.g33.thermostat.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.nio.charset.Charset;
+import java.util.concurrent.Callable;
+
+import nl.tue.hti.g33.thermostat.logging.Log;
+
+/**
+ * Uploads one value to the server with a PUT request. Run by {@link UploadExecutor}.
+ * The body is encoded once into a buffer reused by the uploading thread and sent with an
+ * exact Content-Length, so the server gets it in one piece instead of chunks.
+ * @author Alex on 21.06.2015.
+ */
+public class SendDataTask implements Callable<UploadResult> {
+
+    private static final String LOG_TAG = "service.SendDataTask";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int BUFFER_SIZE = 4096;
+    private static final ThreadLocal<byte[]> sBuffer = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
+    private final HttpTransport mTransport;
+    private final Endpoints mEndpoints;
+    private final Endpoints.Resource mResource;
+    private final String mToSend;
+
+    /**
+     * @param transport Transport to send the request with.
+     * @param endpoints Addresses of the thermostat on the host to send to.
+     * @param resource Resource to update.
+     * @param toSend Body of the request.
+     */
+    public SendDataTask(HttpTransport transport, Endpoints endpoints,
+                        Endpoints.Resource resource, String toSend) {
+
+        mTransport = transport;
+        mEndpoints = endpoints;
+        mResource = resource;
+        mToSend = toSend;
+    }
+
+    public String getUrl() {
+
+        return mEndpoints.getAddress(mResource);
+    }
+
+    /**
+     * @return Path of the resource to update, without the host: uploads of the same resource
+     * have the same path, whichever host they are sent to.
+     */
+    public String getPath() {
+
+        return mEndpoints.getPath(mResource);
+    }
+
+    @Override
+    public UploadResult call() {
+
+        long start = System.nanoTime();
+        int status = UploadResult.STATUS_FAILED;
+        HttpURLConnection connection = null;
+        boolean responded = false;
+        try {
+            byte[] body = encode(mToSend);
+            int length = body == sBuffer.get() ? mToSend.length() : body.length;
+            connection = mTransport.open(mEndpoints.getUrl(mResource), "PUT");
+            connection.setRequestProperty("Content-Type", "application/xml");
+            connection.setUseCaches(false);
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(length);
+
+            connection.connect();
+
+            OutputStream output = connection.getOutputStream();
+            try {
+                output.write(body, 0, length);
+            } finally {
+                output.close();
+            }
+            status = connection.getResponseCode();
+            responded = true;
+
+            if (status != 200) {
+                Log.e(LOG_TAG, "Connection gone wrong");
+            }
+            else {
+                Log.v(LOG_TAG, "Successfully sent data");
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Uploading data failed: " + e);
+        } finally {
+            mTransport.release(connection, responded);
+        }
+        return new UploadResult(getUrl(), status, (System.nanoTime() - start) / 1000000);
+    }
+
+    /**
+     * Encode {@code text} as UTF-8. ASCII text, i.e. every body the thermostat sends, is
+     * copied into the buffer of the current thread; anything else gets a new array.
+     * @return Buffer of the current thread holding {@code text.length()} bytes, or a new array
+     * holding exactly the encoded text.
+     */
+    private static byte[] encode(String text) {
+
+        int length = text.length();
+        byte[] buffer = sBuffer.get();
+        if (buffer.length < length) {
+            buffer = new byte[Math.max(length, 2 * buffer.length)];
+            sBuffer.set(buffer);
+        }
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80) {
+                return text.getBytes(UTF_8);
+            }
+            buffer[i] = (byte) c;
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,609 @@
+package nl.tue.hti.g33.thermostat.service;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import nl.tue.hti.g33.thermostat.logging.Log;
+import nl.tue.hti.g33.thermostat.parser.BinaryCodec;
+import nl.tue.hti.g33.thermostat.parser.ParsedThermostat;
+import nl.tue.hti.g33.thermostat.parser.ThermostatCodec;
+import nl.tue.hti.g33.thermostat.parser.XmlCodec;
+import nl.tue.hti.g33.thermostat.parser.XmlParser;
+import nl.tue.hti.g33.thermostat.service.Endpoints.Resource;
+import nl.tue.hti.g33.thermostat.utils.PollingPolicy;
+import nl.tue.hti.g33.thermostat.utils.Temperature;
+
+/**
+ * Fetches the state of one thermostat from the server and keeps the latest copy of it.
+ * Clients are created by a {@link ClientEngine}, which polls them and shares its transport,
+ * host selector and threads between all of them.
+ * @author Alex, 29.06.2015.
+ */
+public class ThermostatClient {
+
+    private static final String LOG_TAG = "service.ThermostatClient";
+
+    /**
+     * Resources that change on their own and are polled every time in tiered sync mode. The
+     * day only changes when the time passes midnight, which triggers a full sync; the week
+     * program state only changes with the full syncs that follow local edits, or on the
+     * next periodic full sync if another client changed it.
+     */
+    private static final Resource[] VOLATILE_RESOURCES = {
+            Resource.CURRENT_TEMPERATURE, Resource.TARGET_TEMPERATURE, Resource.TIME };
+    private static final long FULL_SYNC_INTERVAL = 60000;
+    /**
+     * Weight of a new measurement in the average cost of tiered and full polls.
+     */
+    private static final double COST_WEIGHT = 0.125;
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Returned by {@link #poll()} when the thermostat state on the server has not changed
+     * since the previous successful poll. Callers should compare by reference.
+     */
+    public static final ParsedThermostat NOT_MODIFIED = new ParsedThermostat();
+
+    /**
+     * Notified whenever a poll returned a new state. Called on a polling thread.
+     */
+    public interface Listener {
+
+        void onThermostatChanged(ThermostatClient client, ParsedThermostat state);
+    }
+
+    private final ClientEngine mEngine;
+    private final String mId;
+    private final PollingPolicy mPollingPolicy;
+    private final XmlParser mParser;
+    private final XmlCodec mXmlCodec;
+    private final CopyOnWriteArrayList<ThermostatCodec> mCodecs;
+    private volatile String mAccept;
+    private final CopyOnWriteArrayList<Listener> mListeners;
+    private final ConcurrentHashMap<String, Endpoints> mEndpoints;
+    private volatile ParsedThermostat mState;
+
+    private String mCurrentHost;
+    private volatile boolean mHedging = false;
+
+    private volatile boolean mConditionalFetch = true;
+    private volatile String mETag;
+    private volatile String mLastModified;
+    private long mLastHash;
+    private boolean mLastHashValid;
+    private final long[] mVolatileHashes = new long[VOLATILE_RESOURCES.length];
+    private boolean mVolatileHashesValid;
+
+    private volatile int mPollCount;
+    private volatile int mUnchangedCount;
+
+    private volatile boolean mTieredSync = true;
+    private ParsedThermostat mLastFull;
+    private long mLastFullSync;
+    private volatile boolean mFullSyncNeeded = true;
+    private double mFullCost = -1;
+    private double mVolatileCost = -1;
+    private long mLastVolatilePoll;
+
+    /**
+     * Next scheduled poll and its generation, managed by the engine while holding
+     * {@link #mScheduleLock}, which unlike the client itself is never held during a fetch.
+     */
+    final Object mScheduleLock = new Object();
+    ScheduledFuture<?> mNextPoll;
+    int mPollGeneration;
+
+    ThermostatClient(ClientEngine engine, String id, PollingPolicy pollingPolicy) {
+
+        mEngine = engine;
+        mId = id;
+        mPollingPolicy = pollingPolicy;
+        mParser = new XmlParser();
+        mXmlCodec = new XmlCodec(mParser);
+        mCodecs = new CopyOnWriteArrayList<>();
+        mCodecs.add(new BinaryCodec());
+        mCodecs.add(mXmlCodec);
+        mAccept = accept(mCodecs);
+        mListeners = new CopyOnWriteArrayList<>();
+        mEndpoints = new ConcurrentHashMap<>();
+    }
+
+    public String getId() {
+
+        return mId;
+    }
+
+    public PollingPolicy getPollingPolicy() {
+
+        return mPollingPolicy;
+    }
+
+    /**
+     * @param host Host, optionally with a port.
+     * @return Addresses of the resources of this thermostat on {@code host}.
+     */
+    public Endpoints getEndpoints(String host) {
+
+        Endpoints endpoints = mEndpoints.get(host);
+        if (endpoints == null) {
+            endpoints = new Endpoints(host, mId);
+            mEndpoints.put(host, endpoints);
+        }
+        return endpoints;
+    }
+
+    /**
+     * @return Latest known state, or null if no poll succeeded yet.
+     */
+    public ParsedThermostat getState() {
+
+        return mState;
+    }
+
+    public void addListener(Listener listener) {
+
+        mListeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Fetch the state from the server and notify the listeners if it changed.
+     * @return Parsed thermostat, {@link #NOT_MODIFIED} if nothing changed since the previous
+     * poll, or null if fetching failed.
+     */
+    public synchronized ParsedThermostat poll() {
+
+        ParsedThermostat result = fetchData();
+        if (result == null) {
+            return null;
+        }
+        mPollCount++;
+        mEngine.onFetchSucceeded(this);
+        if (result == NOT_MODIFIED) {
+            mUnchangedCount++;
+        }
+        else {
+            mState = result;
+            for (Listener listener : mListeners) {
+                listener.onThermostatChanged(this, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Number of successful polls so far.
+     */
+    public int getPollCount() {
+
+        return mPollCount;
+    }
+
+    /**
+     * @return Number of successful polls that found nothing changed and so skipped parsing
+     * and notifying the listeners.
+     */
+    public int getUnchangedCount() {
+
+        return mUnchangedCount;
+    }
+
+    /**
+     * Make the next poll get and report the complete thermostat document, e.g. after the
+     * week program was changed or when a new listener needs the full state.
+     */
+    public void invalidate() {
+
+        mFullSyncNeeded = true;
+    }
+
+    /**
+     * Enable / disable conditional fetching. When enabled, polls send the validators of the
+     * previous response and return {@link #NOT_MODIFIED} if the server answers 304 or sends
+     * exactly the same document again.
+     * @param conditional Use conditional GET requests.
+     */
+    public void setConditionalFetch(boolean conditional) {
+
+        mConditionalFetch = conditional;
+        mFullSyncNeeded = true;
+    }
+
+    /**
+     * Enable / disable tiered sync. When enabled, most polls only get the current and target
+     * temperature and the time, one request each; the whole document, including the week
+     * program, is fetched every {@value #FULL_SYNC_INTERVAL} ms, after {@link #invalidate()}
+     * and when the time passes midnight. Those requests are only worth it while they cost less
+     * than a single request of the whole document, so the average duration of both kinds of
+     * polls is measured per host and tiered polls are skipped while they take longer. One is
+     * still tried every {@value #FULL_SYNC_INTERVAL} ms to notice when that changes.
+     * @param tiered Use tiered sync.
+     */
+    public void setTieredSync(boolean tiered) {
+
+        mTieredSync = tiered;
+        mFullSyncNeeded = true;
+    }
+
+    /**
+     * Enable / disable hedged requests: when the preferred host is slower than usual, the
+     * same request is also sent to another healthy host.
+     * @param hedging Use hedged requests.
+     */
+    public void setHedging(boolean hedging) {
+
+        mHedging = hedging;
+    }
+
+    /**
+     * Offer another codec to the server. Full documents are requested with an Accept header
+     * listing all codecs, most preferred first, and decoded by the codec matching the
+     * Content-Type of the response; XML is used if none matches. By default the compact
+     * {@link BinaryCodec} is preferred over XML.
+     * @param codec Codec, preferred over the ones offered so far.
+     */
+    public void addCodec(ThermostatCodec codec) {
+
+        mCodecs.add(0, codec);
+        mAccept = accept(mCodecs);
+        mFullSyncNeeded = true;
+    }
+
+    private ParsedThermostat fetchData() {
+
+        String host = mEngine.getHosts().getPreferred();
+        if (!host.equals(mCurrentHost)) {
+            // Validators and addresses of the previous server are meaningless on this one
+            Log.v(LOG_TAG, mId + ": switching to " + host);
+            mCurrentHost = host;
+            mEndpoints.clear();
+            resetValidators();
+            mFullCost = -1;
+            mVolatileCost = -1;
+        }
+        long now = System.currentTimeMillis();
+        if (mTieredSync && mLastFull != null && !mFullSyncNeeded
+                && now - mLastFullSync < FULL_SYNC_INTERVAL && isVolatileCheaper(now)) {
+            long start = System.nanoTime();
+            ParsedThermostat result = fetchVolatile(host);
+            if (result != null) {
+                mLastVolatilePoll = now;
+                mVolatileCost = average(mVolatileCost, start);
+            }
+            if (result != null || !mFullSyncNeeded) {
+                return result;
+            }
+        }
+        if (mFullSyncNeeded) {
+            resetValidators();
+        }
+        long start = System.nanoTime();
+        ParsedThermostat full = fetchFull(host);
+        if (full != null) {
+            mFullCost = average(mFullCost, start);
+            mFullSyncNeeded = false;
+            mLastFullSync = now;
+            if (full != NOT_MODIFIED) {
+                mLastFull = full;
+                mVolatileHashesValid = false;
+            }
+        }
+        return full;
+    }
+
+    /**
+     * @return True if a tiered poll should be tried: its requests took less time than a full
+     * poll so far, either has not been measured yet, or it was last tried
+     * {@value #FULL_SYNC_INTERVAL} ms ago.
+     */
+    private boolean isVolatileCheaper(long now) {
+
+        return mVolatileCost < 0 || mFullCost < 0 || mVolatileCost <= mFullCost
+                || now - mLastVolatilePoll >= FULL_SYNC_INTERVAL;
+    }
+
+    /**
+     * @param cost Average cost so far in milliseconds, or -1 if none.
+     * @param start {@link System#nanoTime()} at the start of the poll.
+     * @return Average including the poll that just ended.
+     */
+    private static double average(double cost, long start) {
+
+        double sample = (System.nanoTime() - start) / 1e6;
+        return cost < 0 ? sample : cost + COST_WEIGHT * (sample - cost);
+    }
+
+    /**
+     * Fetch only the values that change on their own and merge them into the last complete
+     * state, whose week program, day, week program state and day / night temperatures are
+     * reused. Nothing is parsed if every response is byte for byte the same as in the
+     * previous call.
+     * @return Merged state, {@link #NOT_MODIFIED}, or null if fetching failed or the time
+     * passed midnight; a full sync is needed in the latter case.
+     */
+    private ParsedThermostat fetchVolatile(String host) {
+
+        byte[][] bodies = new byte[VOLATILE_RESOURCES.length][];
+        boolean same = mVolatileHashesValid;
+        for (int i = 0; i < VOLATILE_RESOURCES.length; i++) {
+            FetchResult response = fetch(host, VOLATILE_RESOURCES[i], false);
+            if (response == null || response.mStatus != 200) {
+                return null;
+            }
+            bodies[i] = response.mBody;
+            same = same && hash(response.mBody) == mVolatileHashes[i];
+        }
+        if (same) {
+            return NOT_MODIFIED;
+        }
+
+        ParsedThermostat merged = new ParsedThermostat();
+        merged.mWeekSchedule = mLastFull.mWeekSchedule;
+        merged.mDayTemperature = mLastFull.mDayTemperature;
+        merged.mNightTemperature = mLastFull.mNightTemperature;
+        merged.mDayOfTheWeek = mLastFull.mDayOfTheWeek;
+        merged.mWeekScheduleOn = mLastFull.mWeekScheduleOn;
+        for (int i = 0; i < bodies.length; i++) {
+            if (!mParser.parseValue(bodies[i], merged)) {
+                mVolatileHashesValid = false;
+                return null;
+            }
+            mVolatileHashes[i] = hash(bodies[i]);
+        }
+        mVolatileHashesValid = true;
+        if (merged.mTime < mLastFull.mTime) {
+            // A new day started; only the whole document tells which one
+            mFullSyncNeeded = true;
+            return null;
+        }
+        if (merged.mTime == mLastFull.mTime
+                && sameTemperature(merged.mCurrentTemperature, mLastFull.mCurrentTemperature)
+                && sameTemperature(merged.mTargetTemperature, mLastFull.mTargetTemperature)) {
+            return NOT_MODIFIED;
+        }
+        mLastFull = merged;
+        return merged;
+    }
+
+    private ParsedThermostat fetchFull(String host) {
+
+        FetchResult response = mHedging ? fetchHedged(host) : fetch(host, Resource.THERMOSTAT, mConditionalFetch);
+        if (response == null) {
+            return null;
+        }
+
+        if (response.mStatus == HttpURLConnection.HTTP_NOT_MODIFIED && mConditionalFetch) {
+            return NOT_MODIFIED;
+        }
+        if (response.mStatus != 200) {
+            if (response.mStatus == 404) {
+                //TODO: create new thermostat
+            }
+            Log.w(LOG_TAG, "Did not get status 200—some error here");
+            return null;
+        }
+        ThermostatCodec codec = codec(response.mContentType);
+        if (!mConditionalFetch) {
+            return codec.parse(response.mBody);
+        }
+
+        long hash = hash(response.mBody);
+        if (mLastHashValid && hash == mLastHash) {
+            return NOT_MODIFIED;
+        }
+
+        ParsedThermostat result = codec.parse(response.mBody);
+        if (result == null) {
+            resetValidators();
+            return null;
+        }
+        mLastHash = hash;
+        mLastHashValid = true;
+        if (response.mHost.equals(mCurrentHost)) {
+            mETag = response.mETag;
+            mLastModified = response.mLastModified;
+        }
+        return result;
+    }
+
+    /**
+     * Response of a single GET of a thermostat resource.
+     */
+    private static class FetchResult {
+
+        private String mHost;
+        private int mStatus;
+        private byte[] mBody;
+        private String mContentType;
+        private String mETag;
+        private String mLastModified;
+    }
+
+    /**
+     * GET a thermostat resource from {@code host} and report the outcome to the host
+     * selector. Touches no state of the client, so several fetches may run at once.
+     * @param host Server to ask.
+     * @param resource Resource to get.
+     * @param conditional Send the validators of the previous response.
+     * @return Response, or null if the request failed.
+     */
+    private FetchResult fetch(String host, Resource resource, boolean conditional) {
+
+        String eTag = mETag;
+        String lastModified = mLastModified;
+        HttpTransport transport = mEngine.getTransport();
+        long start = System.nanoTime();
+        HttpURLConnection connection = null;
+        boolean responded = false;
+        try {
+            connection = transport.open(getEndpoints(host).getUrl(resource), "GET");
+            if (resource == Resource.THERMOSTAT) {
+                connection.setRequestProperty("Accept", mAccept);
+            }
+            if (conditional) {
+                if (eTag != null) {
+                    connection.setRequestProperty("If-None-Match", eTag);
+                }
+                if (lastModified != null) {
+                    connection.setRequestProperty("If-Modified-Since", lastModified);
+                }
+            }
+            connection.connect();
+            FetchResult result = new FetchResult();
+            result.mHost = host;
+            result.mStatus = connection.getResponseCode();
+            responded = true;
+            if (result.mStatus == 200) {
+                result.mBody = transport.readBody(connection);
+                result.mContentType = connection.getContentType();
+                result.mETag = connection.getHeaderField("ETag");
+                result.mLastModified = connection.getHeaderField("Last-Modified");
+            }
+            mEngine.getHosts().report(host, (System.nanoTime() - start) / 1000000,
+                    result.mStatus < 500);
+            return result;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Fetching data from " + host + " failed: " + e);
+            mEngine.getHosts().report(host, (System.nanoTime() - start) / 1000000, false);
+            return null;
+        } finally {
+            transport.release(connection, responded);
+        }
+    }
+
+    /**
+     * Fetch from {@code host}; if no response arrived within its 95th percentile latency,
+     * also ask another healthy host and use whichever answers first.
+     */
+    private FetchResult fetchHedged(final String host) {
+
+        final String alternative = mEngine.getHosts().getAlternative(host);
+        long budget = mEngine.getHosts().getHedgeDelay(host);
+        if (alternative == null || budget < 0) {
+            return fetch(host, Resource.THERMOSTAT, mConditionalFetch);
+        }
+
+        ExecutorCompletionService<FetchResult> requests =
+                new ExecutorCompletionService<>(mEngine.getHedgeExecutor());
+        requests.submit(new Callable<FetchResult>() {
+            @Override
+            public FetchResult call() {
+
+                return fetch(host, Resource.THERMOSTAT, mConditionalFetch);
+            }
+        });
+        try {
+            Future<FetchResult> first = requests.poll(budget, TimeUnit.MILLISECONDS);
+            if (first != null) {
+                return first.get();
+            }
+            Log.v(LOG_TAG, host + " is slow, hedging with " + alternative);
+            // Unconditional: the validators belong to the first host
+            requests.submit(new Callable<FetchResult>() {
+                @Override
+                public FetchResult call() {
+
+                    return fetch(alternative, Resource.THERMOSTAT, false);
+                }
+            });
+            for (int i = 0; i < 2; i++) {
+                FetchResult result = requests.take().get();
+                if (result != null) {
+                    return result;
+                }
+            }
+            return null;
+        } catch (InterruptedException | ExecutionException e) {
+            Log.e(LOG_TAG, "Hedged fetch failed: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Send a request to {@code host} only to find out whether it works.
+     */
+    void probe(String host) {
+
+        fetch(host, Resource.THERMOSTAT, false);
+    }
+
+    /**
+     * @param contentType Content-Type of a response, possibly with parameters, or null.
+     * @return Codec for {@code contentType}, XML if there is none.
+     */
+    private ThermostatCodec codec(String contentType) {
+
+        if (contentType != null) {
+            for (ThermostatCodec codec : mCodecs) {
+                String type = codec.getContentType();
+                if (contentType.regionMatches(true, 0, type, 0, type.length())) {
+                    return codec;
+                }
+            }
+        }
+        return mXmlCodec;
+    }
+
+    /**
+     * @return Accept header listing {@code codecs} with decreasing quality.
+     */
+    private static String accept(Iterable<ThermostatCodec> codecs) {
+
+        StringBuilder accept = new StringBuilder();
+        int quality = 10;
+        for (ThermostatCodec codec : codecs) {
+            if (accept.length() > 0) {
+                accept.append(", ");
+            }
+            accept.append(codec.getContentType());
+            if (quality < 10) {
+                accept.append(";q=0.").append(quality);
+            }
+            if (quality > 1) {
+                quality--;
+            }
+        }
+        return accept.toString();
+    }
+
+    /**
+     * 64-bit FNV-1a hash of a response body: fast, allocates nothing and good enough to tell
+     * whether the server sent the same document again.
+     */
+    private static long hash(byte[] data) {
+
+        long hash = FNV_OFFSET_BASIS;
+        for (byte b : data) {
+            hash ^= b & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    private static boolean sameTemperature(Temperature a, Temperature b) {
+
+        return a == b || a != null && b != null
+                && a.getTenths() == b.getTenths();
+    }
+
+    private void resetValidators() {
+
+        mETag = null;
+        mLastModified = null;
+        mLastHashValid = false;
+    }
+}
@@ -0,0 +1,154 @@
+package nl.tue.hti.g33.thermostat.service;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import nl.tue.hti.g33.thermostat.logging.Log;
+
+/**
+ * Runs uploads with a bounded number of pending tasks.
+ * Uploads of the same resource run strictly one after another in submission order, even if
+ * they go to different hosts; uploads of different resources run in parallel.
+ * @author Alex, 25.06.2015.
+ */
+public class UploadExecutor {
+
+    private static final String LOG_TAG = "service.UploadExecutor";
+
+    private static final int THREADS = 3;
+    private static final int DEFAULT_CAPACITY = 32;
+    private static final long KEEP_ALIVE = 30;
+
+    /**
+     * Receives the result of every finished upload. Called on an upload thread.
+     */
+    public interface Callback {
+
+        void onUploadFinished(UploadResult result);
+    }
+
+    private final ThreadPoolExecutor mPool;
+    private final HashMap<String, ArrayDeque<UploadFuture>> mQueues;
+    private final int mCapacity;
+    private int mPending;
+
+    public UploadExecutor() {
+
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity Maximum number of queued and running uploads.
+     * @throws IllegalArgumentException
+     */
+    public UploadExecutor(int capacity) {
+
+        if (capacity <= 0) {
+            Log.e(LOG_TAG, "Capacity must be positive");
+            throw new IllegalArgumentException(LOG_TAG + ": constructor failed");
+        }
+        mCapacity = capacity;
+        mQueues = new HashMap<>();
+        mPool = new ThreadPoolExecutor(THREADS, THREADS, KEEP_ALIVE, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("Uploader"));
+        mPool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queue an upload behind all earlier uploads of the same resource.
+     * @param task Upload to run.
+     * @param callback Notified when the upload finished, may be null.
+     * @return Future holding the result of the upload.
+     * @throws RejectedExecutionException If too many uploads are pending.
+     */
+    public Future<UploadResult> submit(SendDataTask task, Callback callback) {
+
+        UploadFuture future = new UploadFuture(task, callback);
+        synchronized (mQueues) {
+            if (mPending >= mCapacity) {
+                Log.w(LOG_TAG, "Upload queue is full, rejecting " + task.getUrl());
+                throw new RejectedExecutionException(LOG_TAG + ": queue is full");
+            }
+            mPending++;
+            ArrayDeque<UploadFuture> queue = mQueues.get(future.mKey);
+            if (queue == null) {
+                // Nothing running for this resource: start right away, keep an empty queue as marker
+                mQueues.put(future.mKey, new ArrayDeque<UploadFuture>());
+                mPool.execute(future);
+            }
+            else {
+                queue.add(future);
+            }
+        }
+        return future;
+    }
+
+    /**
+     * @return Number of queued and running uploads.
+     */
+    public int getPendingCount() {
+
+        synchronized (mQueues) {
+            return mPending;
+        }
+    }
+
+    private void onFinished(String key) {
+
+        synchronized (mQueues) {
+            mPending--;
+            ArrayDeque<UploadFuture> queue = mQueues.get(key);
+            UploadFuture next = queue.poll();
+            if (next == null) {
+                mQueues.remove(key);
+            }
+            else {
+                mPool.execute(next);
+            }
+        }
+    }
+
+    private class UploadFuture extends FutureTask<UploadResult> {
+
+        private final String mKey;
+        private final Callback mCallback;
+
+        UploadFuture(SendDataTask task, Callback callback) {
+
+            super(task);
+            // Not the URL, which changes when another host is preferred
+            mKey = task.getPath();
+            mCallback = callback;
+        }
+
+        @Override
+        public void run() {
+
+            try {
+                super.run();
+            } finally {
+                onFinished(mKey);
+            }
+        }
+
+        @Override
+        protected void done() {
+
+            if (mCallback == null || isCancelled()) {
+                return;
+            }
+            try {
+                mCallback.onUploadFinished(get());
+            } catch (InterruptedException | ExecutionException e) {
+                Log.e(LOG_TAG, "Upload to " + mKey + " failed: " + e);
+            }
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package nl.tue.hti.g33.thermostat.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import nl.tue.hti.g33.thermostat.logging.Log;
+
+/**
+ * Append-only write-ahead log of uploads that did not reach the server yet.
+ * Every upload is appended before it is sent and acknowledged once the server accepted it,
+ * so edits survive network failures and process restarts. Appends are only forced to disk
+ * on {@link #sync()} or every {@value #SYNC_BATCH} records. Only the latest pending upload of
+ * each resource is kept; the file is rewritten without superseded and acknowledged records
+ * once it holds more than {@value #COMPACT_THRESHOLD} of them.
+ * Failed uploads are retried with exponential backoff and dropped after
+ * {@value #MAX_ATTEMPTS} attempts or when the server rejected them for good.
+ * @author Alex, 26.06.2015.
+ */
+public class UploadJournal {
+
+    private static final String LOG_TAG = "service.UploadJournal";
+
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_ACK = 2;
+
+    private static final int SYNC_BATCH = 8;
+    private static final int COMPACT_THRESHOLD = 64;
+
+    private static final int MAX_ATTEMPTS = 8;
+    private static final long FIRST_RETRY_DELAY = 2000;
+    private static final long MAX_RETRY_DELAY = 5 * 60 * 1000;
+
+    /**
+     * An upload waiting to be accepted by the server.
+     */
+    public static class Entry {
+
+        private final long mSeq;
+        private final String mResource;
+        private final String mBody;
+        // Only kept in memory: after a restart every upload gets all its attempts again
+        private int mFailures;
+        private long mRetryAt;
+
+        Entry(long seq, String resource, String body) {
+
+            mSeq = seq;
+            mResource = resource;
+            mBody = body;
+        }
+
+        public long getSeq() {
+
+            return mSeq;
+        }
+
+        public String getResource() {
+
+            return mResource;
+        }
+
+        public String getBody() {
+
+            return mBody;
+        }
+    }
+
+    private final File mFile;
+    private final LinkedHashMap<String, Entry> mPending;
+    private FileOutputStream mFileStream;
+    private DataOutputStream mOut;
+    private long mNextSeq;
+    private int mRecords;
+    private int mUnsynced;
+
+    /**
+     * Open the journal, replaying whatever is stored in {@code file}.
+     * @param file Journal file, created if it does not exist.
+     */
+    public UploadJournal(File file) {
+
+        mFile = file;
+        mPending = new LinkedHashMap<>();
+        mNextSeq = 1;
+        load();
+        compact();
+    }
+
+    /**
+     * Record an upload that is about to be sent. Supersedes any pending upload of the same
+     * resource.
+     * @param resource Resource name, e.g. "week_program".
+     * @param body Body of the upload.
+     * @return Sequence number to {@link #acknowledge(long)} once the upload succeeded.
+     */
+    public synchronized long append(String resource, String body) {
+
+        Entry entry = new Entry(mNextSeq++, resource, body);
+        mPending.remove(resource);
+        mPending.put(resource, entry);
+        try {
+            writePut(entry);
+            if (++mUnsynced >= SYNC_BATCH) {
+                sync();
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Could not append to journal: " + e);
+        }
+        compactIfNeeded();
+        return entry.getSeq();
+    }
+
+    /**
+     * Mark an upload as accepted by the server.
+     * @param seq Sequence number returned by {@link #append(String, String)}.
+     */
+    public synchronized void acknowledge(long seq) {
+
+        Entry found = find(seq);
+        if (found == null) {
+            // Already superseded by a newer upload of the same resource
+            return;
+        }
+        mPending.remove(found.getResource());
+        try {
+            openForAppend();
+            mOut.writeByte(RECORD_ACK);
+            mOut.writeLong(seq);
+            mRecords++;
+            mUnsynced++;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Could not acknowledge upload: " + e);
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Record that an upload failed. Uploads rejected for good, and uploads that failed
+     * {@value #MAX_ATTEMPTS} times, are dropped as if acknowledged; others are only returned
+     * by {@link #getDue(long)} again after a delay that doubles with every failure.
+     * @param seq Sequence number returned by {@link #append(String, String)}.
+     * @param permanent True if sending the same upload again cannot succeed.
+     * @param now Current time in milliseconds.
+     * @return True if the upload was dropped.
+     */
+    public synchronized boolean fail(long seq, boolean permanent, long now) {
+
+        Entry entry = find(seq);
+        if (entry == null) {
+            return false;
+        }
+        entry.mFailures++;
+        if (permanent || entry.mFailures >= MAX_ATTEMPTS) {
+            Log.w(LOG_TAG, "Dropping upload of " + entry.getResource() + " after "
+                    + entry.mFailures + (permanent ? " rejection" : " failures"));
+            acknowledge(seq);
+            return true;
+        }
+        long delay = FIRST_RETRY_DELAY << Math.min(entry.mFailures - 1, 20);
+        entry.mRetryAt = now + Math.min(delay, MAX_RETRY_DELAY);
+        return false;
+    }
+
+    /**
+     * @return Uploads that have not been acknowledged, oldest first.
+     */
+    public synchronized List<Entry> getPending() {
+
+        return new ArrayList<>(mPending.values());
+    }
+
+    /**
+     * @param now Current time in milliseconds.
+     * @return Pending uploads that are not waiting for a retry delay, oldest first.
+     */
+    public synchronized List<Entry> getDue(long now) {
+
+        List<Entry> due = new ArrayList<>(mPending.size());
+        for (Entry entry : mPending.values()) {
+            if (entry.mRetryAt <= now) {
+                due.add(entry);
+            }
+        }
+        return due;
+    }
+
+    public synchronized boolean hasPending() {
+
+        return !mPending.isEmpty();
+    }
+
+    /**
+     * Force everything appended so far to disk.
+     */
+    public synchronized void sync() {
+
+        if (mOut == null || mUnsynced == 0) {
+            return;
+        }
+        try {
+            mOut.flush();
+            mFileStream.getFD().sync();
+            mUnsynced = 0;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Could not sync journal: " + e);
+        }
+    }
+
+    private Entry find(long seq) {
+
+        for (Entry entry : mPending.values()) {
+            if (entry.getSeq() == seq) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private void load() {
+
+        if (!mFile.exists()) {
+            return;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+            while (true) {
+                byte type = in.readByte();
+                long seq = in.readLong();
+                if (type == RECORD_PUT) {
+                    String resource = in.readUTF();
+                    String body = in.readUTF();
+                    mPending.remove(resource);
+                    mPending.put(resource, new Entry(seq, resource, body));
+                }
+                else if (type == RECORD_ACK) {
+                    for (Entry entry : mPending.values()) {
+                        if (entry.getSeq() == seq) {
+                            mPending.remove(entry.getResource());
+                            break;
+                        }
+                    }
+                }
+                else {
+                    Log.w(LOG_TAG, "Corrupt journal record, ignoring the rest");
+                    break;
+                }
+                mNextSeq = Math.max(mNextSeq, seq + 1);
+            }
+        } catch (EOFException e) {
+            // End of the journal, possibly a record torn by a crash
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Could not read journal: " + e);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    Log.w(LOG_TAG, "Could not close journal: " + e);
+                }
+            }
+        }
+    }
+
+    private void compactIfNeeded() {
+
+        if (mRecords > COMPACT_THRESHOLD && mRecords > 2 * mPending.size()) {
+            compact();
+        }
+    }
+
+    /**
+     * Rewrite the journal with only the pending uploads.
+     */
+    private void compact() {
+
+        close();
+        File tmp = new File(mFile.getPath() + ".tmp");
+        try {
+            mFileStream = new FileOutputStream(tmp);
+            mOut = new DataOutputStream(new BufferedOutputStream(mFileStream));
+            mRecords = 0;
+            for (Entry entry : mPending.values()) {
+                writePut(entry);
+            }
+            mOut.flush();
+            mFileStream.getFD().sync();
+            mUnsynced = 0;
+            close();
+            if (!tmp.renameTo(mFile)) {
+                throw new IOException("rename failed");
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Could not compact journal: " + e);
+            close();
+        }
+    }
+
+    private void writePut(Entry entry) throws IOException {
+
+        openForAppend();
+        mOut.writeByte(RECORD_PUT);
+        mOut.writeLong(entry.getSeq());
+        mOut.writeUTF(entry.getResource());
+        mOut.writeUTF(entry.getBody());
+        mRecords++;
+    }
+
+    private void openForAppend() throws IOException {
+
+        if (mOut == null) {
+            mFileStream = new FileOutputStream(mFile, true);
+            mOut = new DataOutputStream(new BufferedOutputStream(mFileStream));
+        }
+    }
+
+    private void close() {
+
+        if (mOut == null) {
+            return;
+        }
+        try {
+            mOut.close();
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Could not close journal: " + e);
+        }
+        mOut = null;
+        mFileStream = null;
+    }
+}
@@ -0,0 +1,65 @@
+package nl.tue.hti.g33.thermostat.service;
+
+/**
+ * Outcome of a single upload to the server.
+ * @author Alex, 25.06.2015.
+ */
+public class UploadResult {
+
+    /**
+     * Status reported when the request did not get any HTTP response.
+     */
+    public static final int STATUS_FAILED = -1;
+
+    private final String mUrl;
+    private final int mStatus;
+    private final long mLatency;
+
+    public UploadResult(String url, int status, long latency) {
+
+        mUrl = url;
+        mStatus = status;
+        mLatency = latency;
+    }
+
+    public String getUrl() {
+
+        return mUrl;
+    }
+
+    /**
+     * @return HTTP status code or {@link #STATUS_FAILED}.
+     */
+    public int getStatus() {
+
+        return mStatus;
+    }
+
+    /**
+     * @return Time from opening the connection to receiving the status, in milliseconds.
+     */
+    public long getLatency() {
+
+        return mLatency;
+    }
+
+    public boolean isSuccessful() {
+
+        return mStatus == 200;
+    }
+
+    /**
+     * @return True if the server rejected the upload, so sending it again cannot succeed.
+     * Timeouts and rate limiting count as temporary.
+     */
+    public boolean isRejected() {
+
+        return mStatus >= 400 && mStatus < 500 && mStatus != 408 && mStatus != 429;
+    }
+
+    @Override
+    public String toString() {
+
+        return mUrl + ": " + mStatus + " in " + mLatency + " ms";
+    }
+}
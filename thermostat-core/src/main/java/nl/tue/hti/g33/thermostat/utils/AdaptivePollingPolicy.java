@@ -0,0 +1,94 @@
+package nl.tue.hti.g33.thermostat.utils;
+
+import nl.tue.hti.g33.thermostat.logging.Log;
+
+/**
+ * Polling policy that backs off exponentially while the server state stays the same.
+ * Polls as fast as allowed while the app is in the foreground and for a short window after
+ * a local edit, so the UI stays responsive where it matters.
+ * @author Alex, 24.06.2015.
+ */
+public class AdaptivePollingPolicy implements PollingPolicy {
+
+    private static final String LOG_TAG = "utils.AdaptivePollingPolicy";
+
+    public static final long DEFAULT_MIN_DELAY = 2000;
+    public static final long DEFAULT_MAX_DELAY = 60000;
+    public static final long DEFAULT_EDIT_WINDOW = 10000;
+
+    private final long mMinDelay;
+    private final long mMaxDelay;
+    private final long mEditWindow;
+
+    private long mDelay;
+    private volatile boolean mForeground;
+    private volatile long mFastUntil;
+
+    public AdaptivePollingPolicy() {
+
+        this(DEFAULT_MIN_DELAY, DEFAULT_MAX_DELAY, DEFAULT_EDIT_WINDOW);
+    }
+
+    /**
+     * Create a new policy; parameters are checked.
+     * @param minDelay Shortest delay between polls, in milliseconds.
+     * @param maxDelay Longest delay between polls, in milliseconds.
+     * @param editWindow How long to poll fast after a local edit, in milliseconds.
+     * @throws IllegalArgumentException
+     */
+    public AdaptivePollingPolicy(long minDelay, long maxDelay, long editWindow) {
+
+        if (minDelay <= 0 || maxDelay < minDelay || editWindow < 0) {
+            Log.e(LOG_TAG, "Illegal arguments used in constructor");
+            throw new IllegalArgumentException(LOG_TAG + ": constructor failed");
+        }
+        mMinDelay = minDelay;
+        mMaxDelay = maxDelay;
+        mEditWindow = editWindow;
+        mDelay = minDelay;
+    }
+
+    @Override
+    public long getMinDelay() {
+
+        return mMinDelay;
+    }
+
+    @Override
+    public long getMaxDelay() {
+
+        return mMaxDelay;
+    }
+
+    @Override
+    public synchronized long nextDelay(boolean changed) {
+
+        if (changed) {
+            mDelay = mMinDelay;
+        }
+        else {
+            mDelay = Math.min(mDelay * 2, mMaxDelay);
+        }
+        if (mForeground || now() < mFastUntil) {
+            return mMinDelay;
+        }
+        return mDelay;
+    }
+
+    @Override
+    public void onLocalEdit() {
+
+        mFastUntil = now() + mEditWindow;
+    }
+
+    @Override
+    public void setForeground(boolean foreground) {
+
+        mForeground = foreground;
+    }
+
+    private static long now() {
+
+        return System.nanoTime() / 1000000;
+    }
+}
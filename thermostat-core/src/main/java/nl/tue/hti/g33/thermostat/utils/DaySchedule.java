@@ -0,0 +1,237 @@
+package nl.tue.hti.g33.thermostat.utils;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import nl.tue.hti.g33.thermostat.logging.Log;
+
+/**
+ * Represents a schedule of day/night switches for a day in a convenient way.
+ * Also controls the amount of added switches.
+ * The schedule is stored as one bit per minute of the day, set if it is day during that
+ * minute, so merging periods and looking up the state at some time only take a few word
+ * operations. The periods are derived from the bits when they are asked for.
+ * @author Alex, 17.06.2015.
+ */
+public class DaySchedule implements Serializable {
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final int WORDS = (MINUTES_PER_DAY + 63) / 64;
+    private static final int MAX_PERIODS = 5;
+
+    private final long[] mBits;
+    private transient int mVersion;
+    private transient List<Period> mPeriods;
+    private transient Iterable<Period> mView;
+
+    private static final String LOG_TAG = "utils.DaySchedule";
+
+    public DaySchedule() {
+
+        mBits = new long[WORDS];
+    }
+
+    /**
+     * Copy a schedule, e.g. to change it while the original may still be read.
+     * @param other Schedule to copy.
+     */
+    public DaySchedule(DaySchedule other) {
+
+        mBits = other.mBits.clone();
+        mVersion = other.mVersion;
+        mPeriods = other.mPeriods;
+    }
+
+    /**
+     * Add a period of day temperature, merging it with every period it overlaps or touches.
+     * Make sure that the newly inserted period will not exceed the limit of 5.
+     * This can be ensured if the user is only allowed to set 5 day periods.
+     * After that he can only edit one of the rules. Editing should be implemented
+     * as deletion -> adding a new interval. Hence, after editing there will be at
+     * most 5 day periods again. Periods of zero length do not change the schedule.
+     * @param dayPeriod Period of day temperature to be added to the day schedule.
+     * @throws IllegalArgumentException
+     */
+    public void addDayPeriod(Period dayPeriod) {
+
+        addDayPeriod(dayPeriod.getStartingTime(), dayPeriod.getEndTime());
+    }
+
+    /**
+     * Same as {@link #addDayPeriod(Period)} without creating a {@link Period}.
+     * @param start Start of the period in minutes since 00:00.
+     * @param end End of the period in minutes since 00:00, at most 24:00.
+     * @throws IllegalArgumentException
+     */
+    public void addDayPeriod(int start, int end) {
+
+        if (start < 0 || end > MINUTES_PER_DAY || start > end) {
+            Log.e(LOG_TAG, "Illegal period: " + start + " to " + end);
+            throw new IllegalArgumentException(LOG_TAG + ": illegal period");
+        }
+        if (countPeriods(start, end) > MAX_PERIODS) {
+            Log.e(LOG_TAG, "Too many switches—only 5 are allowed!");
+            throw new IllegalArgumentException(LOG_TAG + "Too many switches");
+        }
+        for (int word = start >>> 6; word < WORDS && word << 6 < end; word++) {
+            mBits[word] |= mask(word, start, end);
+        }
+        changed();
+    }
+
+    /**
+     * Delete an existing day period. Only the start of {@code dayPeriod} is compared: the
+     * period starting at the same time is removed. If there is none, no action will be
+     * taken.
+     * @param dayPeriod Day period to be removed from the schedule.
+     */
+    public void deleteDayPeriod(Period dayPeriod) {
+
+        int start = dayPeriod.getStartingTime();
+        if (start >= MINUTES_PER_DAY || !isDayAt(start) || start > 0 && isDayAt(start - 1)) {
+            return;
+        }
+        int end = getNextSwitch(start + 1);
+        for (int word = start >>> 6; word < WORDS && word << 6 < end; word++) {
+            mBits[word] &= ~mask(word, start, end);
+        }
+        changed();
+    }
+
+    /**
+     * @param minute Minute of the day, 0 to 1439.
+     * @return True if it is day during {@code minute}.
+     * @throws IllegalArgumentException
+     */
+    public boolean isDayAt(int minute) {
+
+        if (minute < 0 || minute >= MINUTES_PER_DAY) {
+            Log.e(LOG_TAG, "Minute out of range: " + minute);
+            throw new IllegalArgumentException(LOG_TAG + ": no such minute");
+        }
+        return (mBits[minute >>> 6] & 1L << minute) != 0;
+    }
+
+    /**
+     * Find the next switch between day and night.
+     * @param from Minute of the day to start looking at, 0 to 1440.
+     * @return First minute at or after {@code from} whose state differs from the minute
+     * before it (night is assumed before 00:00), or 1440 if there is none.
+     * @throws IllegalArgumentException
+     */
+    public int getNextSwitch(int from) {
+
+        if (from < 0 || from > MINUTES_PER_DAY) {
+            Log.e(LOG_TAG, "Minute out of range: " + from);
+            throw new IllegalArgumentException(LOG_TAG + ": no such minute");
+        }
+        for (int word = from >>> 6; word < WORDS; word++) {
+            long edges = mBits[word] ^ previous(word);
+            if (word == from >>> 6) {
+                edges &= -1L << from;
+            }
+            if (edges != 0) {
+                return Math.min((word << 6) + Long.numberOfTrailingZeros(edges),
+                        MINUTES_PER_DAY);
+            }
+        }
+        return MINUTES_PER_DAY;
+    }
+
+    /**
+     * Number that changes whenever a period is added or deleted, so that caches of this
+     * schedule can tell whether they are stale.
+     * @return Modification count of the schedule.
+     */
+    public int getVersion() {
+
+        return mVersion;
+    }
+
+    /**
+     * Returns the schedule as an iterable of periods. The iterable stays valid and reflects
+     * later changes of the schedule; the periods cannot be removed through it.
+     * @return Schedule for the day in from of a list of periods.
+     */
+    public Iterable<Period> getSchedule() {
+
+        if (mView == null) {
+            mView = new Iterable<Period>() {
+                @Override
+                public Iterator<Period> iterator() {
+
+                    return getPeriods().iterator();
+                }
+            };
+        }
+        return mView;
+    }
+
+    /**
+     * @return Unmodifiable list of the periods of day temperature, in order. Derived from the
+     * bits once per change; the list itself does not change when the schedule does.
+     */
+    public List<Period> getPeriods() {
+
+        List<Period> periods = mPeriods;
+        if (periods != null) {
+            return periods;
+        }
+        periods = new ArrayList<>(MAX_PERIODS);
+        int start = getNextSwitch(0);
+        while (start < MINUTES_PER_DAY) {
+            int end = getNextSwitch(start + 1);
+            periods.add(Period.ofPacked(Period.pack(start, end)));
+            start = end < MINUTES_PER_DAY ? getNextSwitch(end + 1) : MINUTES_PER_DAY;
+        }
+        periods = Collections.unmodifiableList(periods);
+        mPeriods = periods;
+        return periods;
+    }
+
+    /**
+     * @return Number of periods the schedule would have after adding [start, end).
+     */
+    private int countPeriods(int start, int end) {
+
+        int count = 0;
+        long carry = 0;
+        for (int word = 0; word < WORDS; word++) {
+            long bits = mBits[word] | mask(word, start, end);
+            // A period starts wherever a bit is set and the bit before it is not
+            count += Long.bitCount(bits & ~(bits << 1 | carry));
+            carry = bits >>> 63;
+        }
+        return count;
+    }
+
+    /**
+     * @return Bits of {@code word}, each shifted to the position of the minute after it.
+     */
+    private long previous(int word) {
+
+        return mBits[word] << 1 | (word > 0 ? mBits[word - 1] >>> 63 : 0);
+    }
+
+    /**
+     * @return Bits of the minutes [start, end) that fall into {@code word}.
+     */
+    private static long mask(int word, int start, int end) {
+
+        int low = Math.max(start - (word << 6), 0);
+        int high = Math.min(end - (word << 6), 64);
+        if (low >= high) {
+            return 0;
+        }
+        return (high == 64 ? -1L : (1L << high) - 1) & -1L << low;
+    }
+
+    private void changed() {
+
+        mPeriods = null;
+        mVersion++;
+    }
+}
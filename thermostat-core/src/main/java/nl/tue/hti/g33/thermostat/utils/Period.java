@@ -1,21 +1,21 @@
 package nl.tue.hti.g33.thermostat.utils;
 
-import android.os.Parcel;
-import android.os.Parcelable;
-import android.util.Log;
-
 import java.io.Serializable;
 
+import nl.tue.hti.g33.thermostat.logging.Log;
+
 /**
  * Helper class that represents a period of time for the thermostat.
+ * The start and end are kept as minutes of the day packed into one int, see
+ * {@link #pack(int, int)}; code that handles many periods can use the packed ints directly.
  * @author Alex, 17.06.2015
  */
-public class Period implements Comparable<Period>, Parcelable, Serializable {
+public class Period implements Comparable<Period>, Serializable {
 
-    private int mStartH;
-    private int mStartM;
-    private int mEndH;
-    private int mEndM;
+    private static final int END_BITS = 11;
+    private static final int END_MASK = (1 << END_BITS) - 1;
+
+    private final int mPacked;
 
     private static final String LOG_TAG = "utils.Period";
 
@@ -36,19 +36,75 @@ public class Period implements Comparable<Period>, Parcelable, Serializable {
             Log.e(LOG_TAG, "Illegal arguments used in constructor");
             throw new IllegalArgumentException(LOG_TAG + ": constructor failed");
         }
-        mStartH = startH;
-        mStartM = startM;
-        mEndH = endH;
-        mEndM = endM;
+        mPacked = pack(startH * 60 + startM, endH * 60 + endM);
+    }
+
+    private Period(int packed) {
+
+        mPacked = packed;
+    }
+
+    /**
+     * Create a period from its packed form.
+     * @param packed Period packed by {@link #pack(int, int)}.
+     * @return New period.
+     * @throws IllegalArgumentException
+     */
+    public static Period ofPacked(int packed) {
+
+        int start = startOf(packed);
+        int end = endOf(packed);
+        if (packed < 0 || start >= 24 * 60 || end > 24 * 60 || start > end) {
+            Log.e(LOG_TAG, "Illegal packed period: " + packed);
+            throw new IllegalArgumentException(LOG_TAG + ": ofPacked failed");
+        }
+        return new Period(packed);
+    }
+
+    /**
+     * Pack a period into one int without checking it.
+     * @param start Starting time in minutes since 00:00.
+     * @param end End time in minutes since 00:00, at most 24:00.
+     * @return Packed period; packed periods compare like their starting times.
+     */
+    public static int pack(int start, int end) {
+
+        return start << END_BITS | end;
+    }
+
+    /**
+     * @param packed Period packed by {@link #pack(int, int)}.
+     * @return Starting time in minutes since 00:00.
+     */
+    public static int startOf(int packed) {
+
+        return packed >>> END_BITS;
+    }
+
+    /**
+     * @param packed Period packed by {@link #pack(int, int)}.
+     * @return End time in minutes since 00:00.
+     */
+    public static int endOf(int packed) {
+
+        return packed & END_MASK;
+    }
+
+    /**
+     * @return This period packed by {@link #pack(int, int)}.
+     */
+    public int getPacked() {
+
+        return mPacked;
     }
 
     /**
      * Get the starting time.
-     * @return Starting time in format {hh, mm} in an {@link java.util.ArrayList}.
+     * @return Starting time; a shared instance, see {@link Time#valueOf(int)}.
      */
     public Time getStartingTimeT() {
 
-        return new Time(mStartH, mStartM);
+        return Time.valueOf(getStartingTime());
     }
 
     /**
@@ -57,7 +113,7 @@ public class Period implements Comparable<Period>, Parcelable, Serializable {
      */
     public int getStartingTime() {
 
-        return mStartH * 60 + mStartM;
+        return startOf(mPacked);
     }
 
     /**
@@ -66,7 +122,7 @@ public class Period implements Comparable<Period>, Parcelable, Serializable {
      */
     public int getStartingTimeH() {
 
-        return mStartH;
+        return getStartingTime() / 60;
     }
 
     /**
@@ -75,16 +131,16 @@ public class Period implements Comparable<Period>, Parcelable, Serializable {
      */
     public int getStartingTimeM() {
 
-        return mStartM;
+        return getStartingTime() % 60;
     }
 
     /**
      * Get the end time.
-     * @return End time in format {hh, mm} in an {@link java.util.ArrayList}.
+     * @return End time; a shared instance, see {@link Time#valueOf(int)}.
      */
     public Time getEndTimeT() {
 
-        return new Time(mEndH, mEndM);
+        return Time.valueOf(getEndTime());
     }
 
     /**
@@ -93,7 +149,7 @@ public class Period implements Comparable<Period>, Parcelable, Serializable {
      */
     public int getEndTime() {
 
-        return mEndH * 60 + mEndM;
+        return endOf(mPacked);
     }
 
     /**
@@ -102,7 +158,7 @@ public class Period implements Comparable<Period>, Parcelable, Serializable {
      */
     public int getEndTimeH() {
 
-        return mEndH;
+        return getEndTime() / 60;
     }
 
     /**
@@ -111,7 +167,7 @@ public class Period implements Comparable<Period>, Parcelable, Serializable {
      */
     public int getEndTimeM() {
 
-        return mEndM;
+        return getEndTime() % 60;
     }
 
     /**
@@ -151,7 +207,7 @@ public class Period implements Comparable<Period>, Parcelable, Serializable {
         start = (start < pStart ? start : pStart);
         end = (end > pEnd ? end : pEnd);
 
-        return new Period(start / 60, start % 60, end / 60, end % 60);
+        return new Period(pack(start, end));
     }
 
     /**
@@ -161,7 +217,8 @@ public class Period implements Comparable<Period>, Parcelable, Serializable {
     @Override
     public String toString() {
 
-        return mStartH + ":" + mStartM + " – " + mEndH + ":" + mEndM;
+        return getStartingTimeH() + ":" + getStartingTimeM() + " – "
+                + getEndTimeH() + ":" + getEndTimeM();
     }
 
     /**
@@ -181,53 +238,4 @@ public class Period implements Comparable<Period>, Parcelable, Serializable {
 
         return getStartingTime() - p.getStartingTime();
     }
-
-    /**
-     * Describe the kinds of special objects contained in this Parcelable's
-     * marshalled representation.
-     *
-     * @return a bitmask indicating the set of special object types marshalled
-     * by the Parcelable.
-     */
-    @Override
-    public int describeContents() {
-        return 0;
-    }
-
-    /**
-     * Flatten this object in to a Parcel.
-     *
-     * @param dest  The Parcel in which the object should be written.
-     * @param flags Additional flags about how the object should be written.
-     *              May be 0 or {@link #PARCELABLE_WRITE_RETURN_VALUE}.
-     */
-    @Override
-    public void writeToParcel(Parcel dest, int flags) {
-
-        dest.writeInt(mStartH);
-        dest.writeInt(mStartM);
-        dest.writeInt(mEndH);
-        dest.writeInt(mEndM);
-    }
-
-    public static final Parcelable.Creator<Period> CREATOR = new Creator<Period>() {
-        @Override
-        public Period createFromParcel(Parcel source) {
-
-            return new Period(source);
-        }
-
-        @Override
-        public Period[] newArray(int size) {
-            return new Period[size];
-        }
-    };
-
-    private Period(Parcel in) {
-
-        mStartH = in.readInt();
-        mStartM = in.readInt();
-        mEndH = in.readInt();
-        mEndM = in.readInt();
-    }
 }
@@ -0,0 +1,37 @@
+package nl.tue.hti.g33.thermostat.utils;
+
+/**
+ * Decides how long {@link Thermostat} waits between two polls of the server.
+ * Implementations must keep every delay within [{@link #getMinDelay()}, {@link #getMaxDelay()}].
+ * @author Alex, 24.06.2015.
+ */
+public interface PollingPolicy {
+
+    /**
+     * @return Shortest delay between two polls, in milliseconds.
+     */
+    long getMinDelay();
+
+    /**
+     * @return Longest delay between two polls, in milliseconds.
+     */
+    long getMaxDelay();
+
+    /**
+     * Called after every poll.
+     * @param changed True if the poll returned a state different from the previous one.
+     * @return Delay until the next poll, in milliseconds.
+     */
+    long nextDelay(boolean changed);
+
+    /**
+     * Called whenever the user changes something locally.
+     */
+    void onLocalEdit();
+
+    /**
+     * Called when a screen showing thermostat data becomes (in)visible.
+     * @param foreground True if the user is looking at the app.
+     */
+    void setForeground(boolean foreground);
+}
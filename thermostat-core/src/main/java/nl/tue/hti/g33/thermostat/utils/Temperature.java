@@ -0,0 +1,172 @@
+package nl.tue.hti.g33.thermostat.utils;
+
+import java.io.Serializable;
+
+import nl.tue.hti.g33.thermostat.logging.Log;
+
+/**
+ * Represents temperature for the thermostat in convenient form.
+ * Only the 251 temperatures from 5.0 to 30.0 degrees Celsius in steps of a tenth exist, so
+ * all of them are created once, with their Fahrenheit values and texts; use
+ * {@link #ofTenths(int)} and {@link #valueOf(double, boolean)} to get them without
+ * allocating.
+ * @author Alex, 17.06.2015.
+ */
+public class Temperature implements Serializable {
+
+    /**
+     * Lowest temperature in tenths of a degree Celsius.
+     */
+    public static final int MIN_TENTHS = 50;
+    /**
+     * Highest temperature in tenths of a degree Celsius.
+     */
+    public static final int MAX_TENTHS = 300;
+
+    private static final Temperature[] CACHE = new Temperature[MAX_TENTHS - MIN_TENTHS + 1];
+
+    static {
+        for (int tenths = MIN_TENTHS; tenths <= MAX_TENTHS; tenths++) {
+            CACHE[tenths - MIN_TENTHS] = new Temperature(tenths);
+        }
+    }
+
+    private final double mTemperature;
+    private transient int mTenths;
+    private transient double mFahrenheit;
+    private transient String mCelsiusText;
+    private transient String mFahrenheitText;
+
+    private static final String LOG_TAG = "utils.Temperature";
+
+    /**
+     * Create a new temperature between 5.0 and 30.0; prefer
+     * {@link #valueOf(double, boolean)}, which returns a shared instance.
+     * @param temperature Temperature value to be assigned after checks.
+     * @param fahrenheit Set to true if the value is in degrees Fahrenheit
+     */
+    public Temperature(double temperature, boolean fahrenheit) {
+
+        Temperature canonical = valueOf(temperature, fahrenheit);
+        mTemperature = canonical.mTemperature;
+        mTenths = canonical.mTenths;
+        mFahrenheit = canonical.mFahrenheit;
+        mCelsiusText = canonical.mCelsiusText;
+        mFahrenheitText = canonical.mFahrenheitText;
+    }
+
+    private Temperature(int tenths) {
+
+        mTemperature = tenths / 10.0;
+        mTenths = tenths;
+        mFahrenheit = convertToFahrenheit(mTemperature);
+        mCelsiusText = String.valueOf(mTemperature);
+        mFahrenheitText = String.valueOf(mFahrenheit);
+    }
+
+    /**
+     * Get the temperature with a number of tenths of a degree Celsius.
+     * @param tenths Temperature in tenths of a degree Celsius, 50 to 300.
+     * @return Shared instance.
+     * @throws IllegalArgumentException
+     */
+    public static Temperature ofTenths(int tenths) {
+
+        if (tenths < MIN_TENTHS || tenths > MAX_TENTHS) {
+            Log.e(LOG_TAG, "Temperature is out of range: " + tenths + " tenths");
+            throw new IllegalArgumentException(LOG_TAG + ": no such temperature");
+        }
+        return CACHE[tenths - MIN_TENTHS];
+    }
+
+    /**
+     * Get a temperature between 5.0 and 30.0, truncated to a tenth of a degree Celsius like
+     * {@link #Temperature(double, boolean)} does.
+     * @param temperature Temperature value.
+     * @param fahrenheit Set to true if the value is in degrees Fahrenheit
+     * @return Shared instance.
+     * @throws IllegalArgumentException
+     */
+    public static Temperature valueOf(double temperature, boolean fahrenheit) {
+
+        double celsiusTemperature = fahrenheit ? (temperature - 32) * 5 / 9 : temperature;
+        int tenths = (int) (celsiusTemperature * 10.0);
+        if (tenths < MIN_TENTHS || tenths > MAX_TENTHS) {
+            Log.e(LOG_TAG, "Temperature is out of range");
+            throw new IllegalArgumentException(LOG_TAG + ": constructor failed");
+        }
+        return CACHE[tenths - MIN_TENTHS];
+    }
+
+    /**
+     * Get the stored temperature.
+     * @param fahrenheit Set to true if you want the value in degrees Fahrenheit.
+     * @return Temperature in the desired format, round to tenth.
+     */
+    public double getTemperature(boolean fahrenheit) {
+
+        return fahrenheit ? mFahrenheit : mTemperature;
+    }
+
+    /**
+     * @return Temperature in tenths of a degree Celsius.
+     */
+    public int getTenths() {
+
+        return mTenths;
+    }
+
+    /**
+     * @param fahrenheit Set to true if you want the value in degrees Fahrenheit.
+     * @return Temperature in tenths of a degree in the desired format.
+     */
+    public int getTenths(boolean fahrenheit) {
+
+        return fahrenheit ? (int) Math.round(mFahrenheit * 10) : mTenths;
+    }
+
+    /**
+     * Text of the temperature, the same as of {@link #getTemperature(boolean)}.
+     * @param fahrenheit Set to true if you want the value in degrees Fahrenheit.
+     * @return Shared text, e.g. "21.5".
+     */
+    public String toString(boolean fahrenheit) {
+
+        return fahrenheit ? mFahrenheitText : mCelsiusText;
+    }
+
+    @Override
+    public String toString() {
+
+        return mCelsiusText;
+    }
+
+    /**
+     * Replace a deserialized temperature by the shared instance.
+     * @return Shared instance.
+     */
+    private Object readResolve() {
+
+        return ofTenths((int) Math.round(mTemperature * 10));
+    }
+
+    /**
+     * Converts temperature from degrees Celsius to degrees Fahrenheit.
+     * @param temperature Temperature in degrees Celsius.
+     * @return Truncated temperature in degrees Fahrenheit.
+     */
+    private static double convertToFahrenheit(double temperature) {
+
+        return roundToTenth(temperature * 9 / 5 + 32);
+    }
+
+    /**
+     * Trick to truncate a number to tenth.
+     * @param number Any double to truncate.
+     * @return The same number truncated to tenth.
+     */
+    private static double roundToTenth(double number) {
+
+        return ((int) (number * 10.0)) / 10.0;
+    }
+}
@@ -0,0 +1,197 @@
+package nl.tue.hti.g33.thermostat.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import nl.tue.hti.g33.thermostat.parser.PackedThermostat;
+import nl.tue.hti.g33.thermostat.parser.ParsedThermostat;
+
+/**
+ * Immutable state of a thermostat. Every change creates a new snapshot that shares whatever
+ * did not change with the old one, in particular the schedules of all other days, so a
+ * snapshot can be read from any thread without locking or copying. The {@link DaySchedule}
+ * objects of a snapshot must not be changed.
+ * @author Alex, 07.07.2015.
+ */
+public final class ThermostatSnapshot {
+
+    /**
+     * State before anything is known: empty day schedules and no temperatures.
+     */
+    public static final ThermostatSnapshot EMPTY = new ThermostatSnapshot(emptyWeek(), null,
+            null, null, null, false, 0, null);
+
+    private final List<DaySchedule> mWeekSchedule;
+    private final Temperature mDayTemperature;
+    private final Temperature mNightTemperature;
+    private final Temperature mCurrentTemperature;
+    private final Temperature mTargetTemperature;
+    private final boolean mWeekScheduleOn;
+    private final int mTime;
+    private final DAY mDayOfTheWeek;
+
+    private ThermostatSnapshot(List<DaySchedule> weekSchedule, Temperature dayTemperature,
+                               Temperature nightTemperature, Temperature currentTemperature,
+                               Temperature targetTemperature, boolean weekScheduleOn, int time,
+                               DAY dayOfTheWeek) {
+
+        mWeekSchedule = weekSchedule;
+        mDayTemperature = dayTemperature;
+        mNightTemperature = nightTemperature;
+        mCurrentTemperature = currentTemperature;
+        mTargetTemperature = targetTemperature;
+        mWeekScheduleOn = weekScheduleOn;
+        mTime = time;
+        mDayOfTheWeek = dayOfTheWeek;
+    }
+
+    /**
+     * Take over a state fetched from the server. The week schedule of this snapshot is kept
+     * if {@code state} has none, or if its deferred week program cannot be decoded.
+     * @param state Fetched state; must not be changed afterwards.
+     * @return New snapshot.
+     */
+    public ThermostatSnapshot withServerState(ParsedThermostat state) {
+
+        List<DaySchedule> weekSchedule = state.mWeekSchedule == null ? mWeekSchedule
+                : PackedThermostat.readOnlyWeekSchedule(state.mWeekSchedule, mWeekSchedule);
+        return new ThermostatSnapshot(weekSchedule, state.mDayTemperature,
+                state.mNightTemperature, state.mCurrentTemperature, state.mTargetTemperature,
+                state.mWeekScheduleOn, state.mTime, state.mDayOfTheWeek);
+    }
+
+    public ThermostatSnapshot withDayTemperature(Temperature temperature) {
+
+        return new ThermostatSnapshot(mWeekSchedule, temperature, mNightTemperature,
+                mCurrentTemperature, mTargetTemperature, mWeekScheduleOn, mTime, mDayOfTheWeek);
+    }
+
+    public ThermostatSnapshot withNightTemperature(Temperature temperature) {
+
+        return new ThermostatSnapshot(mWeekSchedule, mDayTemperature, temperature,
+                mCurrentTemperature, mTargetTemperature, mWeekScheduleOn, mTime, mDayOfTheWeek);
+    }
+
+    public ThermostatSnapshot withTargetTemperature(Temperature temperature) {
+
+        return new ThermostatSnapshot(mWeekSchedule, mDayTemperature, mNightTemperature,
+                mCurrentTemperature, temperature, mWeekScheduleOn, mTime, mDayOfTheWeek);
+    }
+
+    public ThermostatSnapshot withWeekScheduleOn(boolean on) {
+
+        return new ThermostatSnapshot(mWeekSchedule, mDayTemperature, mNightTemperature,
+                mCurrentTemperature, mTargetTemperature, on, mTime, mDayOfTheWeek);
+    }
+
+    /**
+     * @param day Day to change.
+     * @param dayPeriod Period of day temperature to add, see
+     *                  {@link DaySchedule#addDayPeriod(Period)}.
+     * @return New snapshot, in which only the schedule of {@code day} is a new object.
+     * @throws IllegalArgumentException
+     */
+    public ThermostatSnapshot withSwitchAdded(DAY day, Period dayPeriod) {
+
+        DaySchedule schedule = new DaySchedule(mWeekSchedule.get(day.getId()));
+        schedule.addDayPeriod(dayPeriod);
+        return withDaySchedule(day, schedule);
+    }
+
+    /**
+     * @param day Day to change.
+     * @param dayPeriod Period of day temperature to delete, see
+     *                  {@link DaySchedule#deleteDayPeriod(Period)}.
+     * @return New snapshot, in which only the schedule of {@code day} is a new object.
+     */
+    public ThermostatSnapshot withSwitchDeleted(DAY day, Period dayPeriod) {
+
+        DaySchedule schedule = new DaySchedule(mWeekSchedule.get(day.getId()));
+        schedule.deleteDayPeriod(dayPeriod);
+        return withDaySchedule(day, schedule);
+    }
+
+    public List<DaySchedule> getWeekSchedule() {
+
+        return mWeekSchedule;
+    }
+
+    public DaySchedule getDaySchedule(DAY day) {
+
+        return mWeekSchedule.get(day.getId());
+    }
+
+    public Temperature getDayTemperature() {
+
+        return mDayTemperature;
+    }
+
+    public Temperature getNightTemperature() {
+
+        return mNightTemperature;
+    }
+
+    public Temperature getCurrentTemperature() {
+
+        return mCurrentTemperature;
+    }
+
+    public Temperature getTargetTemperature() {
+
+        return mTargetTemperature;
+    }
+
+    public boolean getWeekScheduleOn() {
+
+        return mWeekScheduleOn;
+    }
+
+    /**
+     * @return Time in minutes since 00:00.
+     */
+    public int getTime() {
+
+        return mTime;
+    }
+
+    public DAY getDayOfTheWeek() {
+
+        return mDayOfTheWeek;
+    }
+
+    /**
+     * @return State to upload; shares the day schedules of this snapshot.
+     */
+    public ParsedThermostat toParsedThermostat() {
+
+        ParsedThermostat state = new ParsedThermostat();
+        state.mWeekSchedule = mWeekSchedule;
+        state.mDayTemperature = mDayTemperature;
+        state.mNightTemperature = mNightTemperature;
+        state.mCurrentTemperature = mCurrentTemperature;
+        state.mTargetTemperature = mTargetTemperature;
+        state.mWeekScheduleOn = mWeekScheduleOn;
+        state.mTime = mTime;
+        state.mDayOfTheWeek = mDayOfTheWeek;
+        return state;
+    }
+
+    private ThermostatSnapshot withDaySchedule(DAY day, DaySchedule schedule) {
+
+        List<DaySchedule> weekSchedule = new ArrayList<>(mWeekSchedule);
+        weekSchedule.set(day.getId(), schedule);
+        return new ThermostatSnapshot(Collections.unmodifiableList(weekSchedule),
+                mDayTemperature, mNightTemperature, mCurrentTemperature, mTargetTemperature,
+                mWeekScheduleOn, mTime, mDayOfTheWeek);
+    }
+
+    private static List<DaySchedule> emptyWeek() {
+
+        List<DaySchedule> weekSchedule = new ArrayList<>(7);
+        for (int i = 0; i < 7; i++) {
+            weekSchedule.add(new DaySchedule());
+        }
+        return Collections.unmodifiableList(weekSchedule);
+    }
+}
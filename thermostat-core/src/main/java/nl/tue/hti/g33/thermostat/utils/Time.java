@@ -0,0 +1,114 @@
+package nl.tue.hti.g33.thermostat.utils;
+
+import java.io.Serializable;
+
+import nl.tue.hti.g33.thermostat.logging.Log;
+
+/**
+ * Created by Alex on 21.06.2015.
+ * All 1441 times from 00:00 to 24:00 are created once together with their "HH:MM" texts;
+ * {@link #valueOf(int)} returns them without allocating.
+ */
+public class Time implements Serializable {
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private static final Time[] TIMES = new Time[MINUTES_PER_DAY + 1];
+
+    static {
+        for (int time = 0; time <= MINUTES_PER_DAY; time++) {
+            TIMES[time] = new Time(time / 60, time % 60, format(time / 60, time % 60));
+        }
+    }
+
+    private final int mH;
+    private final int mM;
+    private final transient String mText;
+
+    private static final String LOG_TAG = "utils.Time";
+
+    public Time(int time) {
+
+        this(time / 60, time % 60);
+    }
+
+    public Time(int h, int m) {
+
+        if (h < 0 || h > 24 || m < 0 || m > 59 || h == 24 && m != 0) {
+            Log.e(LOG_TAG, "Time(int time) went wrong");
+            throw new IllegalArgumentException(LOG_TAG + "Time(int time) failed");
+        }
+        mH = h;
+        mM = m;
+        mText = TIMES[h * 60 + m].mText;
+    }
+
+    private Time(int h, int m, String text) {
+
+        mH = h;
+        mM = m;
+        mText = text;
+    }
+
+    /**
+     * Get a time of the day.
+     * @param time Minutes since 00:00, 0 to 1440.
+     * @return Shared instance.
+     * @throws IllegalArgumentException
+     */
+    public static Time valueOf(int time) {
+
+        if (time < 0 || time > MINUTES_PER_DAY) {
+            Log.e(LOG_TAG, "Time out of range: " + time);
+            throw new IllegalArgumentException(LOG_TAG + ": no such time");
+        }
+        return TIMES[time];
+    }
+
+    /**
+     * Text of a time of the day without creating it.
+     * @param time Minutes since 00:00, 0 to 1440.
+     * @return Shared text in format "HH:MM".
+     * @throws IllegalArgumentException
+     */
+    public static String toString(int time) {
+
+        return valueOf(time).mText;
+    }
+
+    public int getTime() {
+
+        return mH * 60 + mM;
+    }
+
+    public int getTimeH() {
+
+        return mH;
+    }
+
+    public int getTimeM() {
+
+        return mM;
+    }
+
+    @Override
+    public String toString() {
+
+        return mText;
+    }
+
+    /**
+     * Replace a deserialized time by the shared instance, which also has the text.
+     * @return Shared instance.
+     */
+    private Object readResolve() {
+
+        return valueOf(getTime());
+    }
+
+    private static String format(int h, int m) {
+
+        return (h < 10 ? "0" : "") + Integer.toString(h) + ":"
+                + (m < 10 ? "0" : "") + Integer.toString(m);
+    }
+}
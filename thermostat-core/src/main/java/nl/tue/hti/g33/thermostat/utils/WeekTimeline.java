@@ -0,0 +1,236 @@
+package nl.tue.hti.g33.thermostat.utils;
+
+import java.util.Arrays;
+import java.util.List;
+
+import nl.tue.hti.g33.thermostat.logging.Log;
+
+/**
+ * The week program compiled into one sorted array of the minutes of the week at which the
+ * thermostat switches between day and night, so that the scheduled temperature and the next
+ * switch at any time are found by binary search. Minutes of the week count from Monday 00:00;
+ * like in {@link DaySchedule} every day starts at night unless a period starts at 00:00.
+ * Immutable: {@link #rebuild(List, Temperature, Temperature)} returns a new timeline that
+ * shares the switches of all days that did not change.
+ * @author Alex, 06.07.2015.
+ */
+public final class WeekTimeline {
+
+    private static final String LOG_TAG = "utils.WeekTimeline";
+
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    public static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+
+    private static final int[] NO_SWITCHES = new int[0];
+
+    /**
+     * Timeline without any day period or temperature.
+     */
+    public static final WeekTimeline EMPTY = new WeekTimeline(new DaySchedule[7], new int[7],
+            new int[][] { NO_SWITCHES, NO_SWITCHES, NO_SWITCHES, NO_SWITCHES, NO_SWITCHES,
+                    NO_SWITCHES, NO_SWITCHES }, null, null);
+
+    private final DaySchedule[] mDays;
+    private final int[] mVersions;
+    private final int[][] mDaySwitches;
+    private final Temperature mDayTemperature;
+    private final Temperature mNightTemperature;
+    private final int[] mSwitches;
+    private final boolean mStartsAsDay;
+
+    private WeekTimeline(DaySchedule[] days, int[] versions, int[][] daySwitches,
+                         Temperature dayTemperature, Temperature nightTemperature) {
+
+        mDays = days;
+        mVersions = versions;
+        mDaySwitches = daySwitches;
+        mDayTemperature = dayTemperature;
+        mNightTemperature = nightTemperature;
+
+        int count = 0;
+        for (int[] switches : daySwitches) {
+            count += switches.length;
+        }
+        int[] week = new int[count];
+        int n = 0;
+        for (int day = 0; day < 7; day++) {
+            for (int minute : daySwitches[day]) {
+                int switchAt = day * MINUTES_PER_DAY + minute;
+                if (n > 0 && week[n - 1] == switchAt) {
+                    // Day until midnight and again from midnight: no switch at all
+                    n--;
+                }
+                else {
+                    week[n++] = switchAt;
+                }
+            }
+        }
+        // The same across the end of the week, from Sunday into Monday
+        boolean startsAsDay = n >= 2 && week[0] == 0 && week[n - 1] == MINUTES_PER_WEEK;
+        if (startsAsDay) {
+            week = Arrays.copyOfRange(week, 1, n - 1);
+        }
+        else if (n < week.length) {
+            week = Arrays.copyOf(week, n);
+        }
+        mSwitches = week;
+        mStartsAsDay = startsAsDay;
+    }
+
+    /**
+     * Compile a week program.
+     * @param weekSchedule Schedules of all days, Monday first, or null if not known.
+     * @param dayTemperature Day temperature, or null if not known.
+     * @param nightTemperature Night temperature, or null if not known.
+     * @return Compiled week program.
+     * @throws IllegalArgumentException
+     */
+    public static WeekTimeline compile(List<DaySchedule> weekSchedule,
+                                       Temperature dayTemperature,
+                                       Temperature nightTemperature) {
+
+        return EMPTY.rebuild(weekSchedule, dayTemperature, nightTemperature);
+    }
+
+    /**
+     * Compile a changed week program, reusing the switches of every day whose
+     * {@link DaySchedule} is the same object at the same version as before.
+     * @param weekSchedule Schedules of all days, Monday first, or null if not known.
+     * @param dayTemperature Day temperature, or null if not known.
+     * @param nightTemperature Night temperature, or null if not known.
+     * @return This timeline if nothing changed, otherwise a new one.
+     * @throws IllegalArgumentException
+     */
+    public WeekTimeline rebuild(List<DaySchedule> weekSchedule, Temperature dayTemperature,
+                                Temperature nightTemperature) {
+
+        if (weekSchedule != null && weekSchedule.size() != 7) {
+            Log.e(LOG_TAG, "Week schedule has " + weekSchedule.size() + " days");
+            throw new IllegalArgumentException(LOG_TAG + ": not a week");
+        }
+        DaySchedule[] days = null;
+        int[] versions = null;
+        int[][] daySwitches = null;
+        for (int day = 0; day < 7; day++) {
+            DaySchedule schedule = weekSchedule == null ? null : weekSchedule.get(day);
+            int version = schedule == null ? 0 : schedule.getVersion();
+            if (schedule == mDays[day] && version == mVersions[day]) {
+                continue;
+            }
+            if (days == null) {
+                days = mDays.clone();
+                versions = mVersions.clone();
+                daySwitches = mDaySwitches.clone();
+            }
+            days[day] = schedule;
+            versions[day] = version;
+            daySwitches[day] = schedule == null ? NO_SWITCHES : switches(schedule);
+        }
+        if (days == null && sameTemperature(dayTemperature, mDayTemperature)
+                && sameTemperature(nightTemperature, mNightTemperature)) {
+            return this;
+        }
+        return days == null
+                ? new WeekTimeline(mDays, mVersions, mDaySwitches, dayTemperature,
+                        nightTemperature)
+                : new WeekTimeline(days, versions, daySwitches, dayTemperature,
+                        nightTemperature);
+    }
+
+    /**
+     * @param day ID of the day, see {@link DAY#getId()}.
+     * @param minute Minute of the day, 0 to 1439.
+     * @return True if the week program asks for the day temperature at that time.
+     * @throws IllegalArgumentException
+     */
+    public boolean isDayAt(int day, int minute) {
+
+        int passed = countSwitchesUntil(weekMinute(day, minute));
+        return mStartsAsDay == (passed % 2 == 0);
+    }
+
+    /**
+     * @param day ID of the day, see {@link DAY#getId()}.
+     * @param minute Minute of the day, 0 to 1439.
+     * @return Day or night temperature, whichever the week program asks for at that time,
+     * or null if that temperature is not known.
+     * @throws IllegalArgumentException
+     */
+    public Temperature targetAt(int day, int minute) {
+
+        return isDayAt(day, minute) ? mDayTemperature : mNightTemperature;
+    }
+
+    /**
+     * @param day ID of the day, see {@link DAY#getId()}.
+     * @param minute Minute of the day, 0 to 1439.
+     * @return Minute of the week of the first switch after that time, at least
+     * {@value #MINUTES_PER_WEEK} if it is in the next week, or -1 if the week program has no
+     * switches. The switch goes from the state of {@link #isDayAt(int, int)} to the other.
+     * @throws IllegalArgumentException
+     */
+    public int nextSwitchAfter(int day, int minute) {
+
+        if (mSwitches.length == 0) {
+            return -1;
+        }
+        int passed = countSwitchesUntil(weekMinute(day, minute));
+        return passed < mSwitches.length
+                ? mSwitches[passed] : mSwitches[0] + MINUTES_PER_WEEK;
+    }
+
+    /**
+     * @return Number of switches per week.
+     */
+    public int getSwitchCount() {
+
+        return mSwitches.length;
+    }
+
+    /**
+     * @return Number of switches at or before {@code weekMinute}.
+     */
+    private int countSwitchesUntil(int weekMinute) {
+
+        int index = Arrays.binarySearch(mSwitches, weekMinute);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    private static int weekMinute(int day, int minute) {
+
+        if (day < 0 || day >= 7 || minute < 0 || minute >= MINUTES_PER_DAY) {
+            Log.e(LOG_TAG, "No such time: day " + day + ", minute " + minute);
+            throw new IllegalArgumentException(LOG_TAG + ": no such time");
+        }
+        return day * MINUTES_PER_DAY + minute;
+    }
+
+    /**
+     * @return Minutes of the day at which {@code schedule} switches, including 1440 if it is
+     * day until midnight.
+     */
+    private static int[] switches(DaySchedule schedule) {
+
+        int[] switches = new int[10];
+        int count = 0;
+        int from = 0;
+        while (true) {
+            int minute = schedule.getNextSwitch(from);
+            if (minute >= MINUTES_PER_DAY) {
+                if (count % 2 == 1) {
+                    switches[count++] = MINUTES_PER_DAY;
+                }
+                break;
+            }
+            switches[count++] = minute;
+            from = minute + 1;
+        }
+        return count == 0 ? NO_SWITCHES : Arrays.copyOf(switches, count);
+    }
+
+    private static boolean sameTemperature(Temperature a, Temperature b) {
+
+        return a == b || a != null && b != null
+                && a.getTenths() == b.getTenths();
+    }
+}
@@ -0,0 +1,227 @@
+package nl.tue.hti.g33.thermostat.parser;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Alex, 08.07.2015.
+ */
+public class BinaryCodecTest {
+
+    private static final int HEADER_SIZE = 14;
+
+    private BinaryCodec mCodec;
+
+    @Before
+    public void setUp() {
+
+        mCodec = new BinaryCodec();
+    }
+
+    @Test
+    public void roundTripKeepsAllValues() {
+
+        PackedThermostat thermostat = thermostat();
+        PackedThermostat decoded = mCodec.decode(mCodec.encode(thermostat));
+
+        assertNotNull(decoded);
+        assertEquals(thermostat, decoded);
+        assertEquals(215, decoded.getDayTemperature());
+        assertEquals(3, decoded.getDayOfTheWeek());
+        assertEquals(17 * 60 + 45, decoded.getTime());
+    }
+
+    @Test
+    public void roundTripKeepsTheWidestTimesAndMostPeriods() {
+
+        PackedThermostat thermostat = new PackedThermostat();
+        // Five periods, the maximum, up to 24:00, the largest time that fits in 11 bits
+        for (int i = 0; i < 5; i++) {
+            thermostat.addPeriod(6, i * 300, i * 300 + 100);
+        }
+        thermostat.addPeriod(0, 1439, 1440);
+
+        PackedThermostat decoded = mCodec.decode(mCodec.encode(thermostat));
+        assertNotNull(decoded);
+        assertEquals(5, decoded.getPeriodCount(6));
+        assertEquals(1200, decoded.getPeriodStart(6, 4));
+        assertEquals(1300, decoded.getPeriodEnd(6, 4));
+        assertEquals(1440, decoded.getPeriodEnd(0, 0));
+        assertEquals(thermostat, decoded);
+    }
+
+    @Test
+    public void roundTripWithoutWeekProgramOrTemperatures() {
+
+        PackedThermostat thermostat = new PackedThermostat();
+        byte[] data = mCodec.encode(thermostat);
+        assertEquals(HEADER_SIZE, data.length);
+
+        PackedThermostat decoded = mCodec.decode(data);
+        assertNotNull(decoded);
+        assertFalse(decoded.hasWeekSchedule());
+        assertEquals(PackedThermostat.UNKNOWN, decoded.getCurrentTemperature());
+        assertEquals(-1, decoded.getDayOfTheWeek());
+    }
+
+    @Test
+    public void emptyWeekProgramIsStillKnown() {
+
+        PackedThermostat thermostat = new PackedThermostat();
+        thermostat.setHasWeekSchedule(true);
+
+        PackedThermostat decoded = mCodec.decode(mCodec.encode(thermostat));
+        assertNotNull(decoded);
+        assertTrue(decoded.hasWeekSchedule());
+        assertEquals(0, decoded.getPeriodCount(2));
+    }
+
+    @Test
+    public void parseAndSerializeRoundTrip() {
+
+        PackedThermostat thermostat = thermostat();
+        ParsedThermostat parsed = mCodec.parse(mCodec.encode(thermostat));
+
+        assertNotNull(parsed);
+        assertEquals(thermostat, PackedThermostat.pack(parsed));
+        assertEquals(thermostat, mCodec.decode(mCodec.serialize(parsed)));
+    }
+
+    @Test
+    public void rejectsMissingOrForeignData() {
+
+        assertNull(mCodec.parse(null));
+        assertNull(mCodec.parse(new byte[0]));
+        assertNull(mCodec.parse("<thermostat/>".getBytes()));
+        byte[] data = mCodec.encode(thermostat());
+        assertNull(mCodec.parse(Arrays.copyOf(data, HEADER_SIZE - 1)));
+    }
+
+    @Test
+    public void rejectsUnknownVersion() {
+
+        byte[] data = mCodec.encode(thermostat());
+        data[1] = 2;
+        assertNull(mCodec.parse(data));
+    }
+
+    @Test
+    public void rejectsInvalidDayOrTime() {
+
+        byte[] data = mCodec.encode(thermostat());
+        data[3] = 7;
+        assertNull(mCodec.parse(data));
+
+        data = mCodec.encode(thermostat());
+        writeShort(data, 4, 24 * 60);
+        assertNull(mCodec.parse(data));
+    }
+
+    @Test
+    public void rejectsTemperatureOutOfRange() {
+
+        for (int offset = 6; offset <= 12; offset += 2) {
+            byte[] data = mCodec.encode(thermostat());
+            writeShort(data, offset, 301);
+            assertNull("offset " + offset, mCodec.parse(data));
+
+            writeShort(data, offset, 49);
+            assertNull("offset " + offset, mCodec.parse(data));
+
+            writeShort(data, offset, -215);
+            assertNull("offset " + offset, mCodec.parse(data));
+        }
+    }
+
+    @Test
+    public void rejectsTruncatedWeekProgram() {
+
+        byte[] data = mCodec.encode(thermostat());
+        for (int length = HEADER_SIZE; length < data.length; length++) {
+            assertNull("length " + length, mCodec.parse(Arrays.copyOf(data, length)));
+        }
+    }
+
+    @Test
+    public void rejectsPeriodsBeyondMidnight() {
+
+        PackedThermostat thermostat = new PackedThermostat();
+        thermostat.addPeriod(0, 0, 60);
+        byte[] data = mCodec.encode(thermostat);
+        // The end of the only period takes the last 11 of the 14 + 22 bits after the header
+        writeBits(data, HEADER_SIZE * 8 + 3 + 11, 1441, 11);
+        assertNull(mCodec.parse(data));
+
+        writeBits(data, HEADER_SIZE * 8 + 3 + 11, 2047, 11);
+        assertNull(mCodec.parse(data));
+    }
+
+    @Test
+    public void rejectsPeriodEndingBeforeItStarts() {
+
+        PackedThermostat thermostat = new PackedThermostat();
+        thermostat.addPeriod(0, 120, 180);
+        byte[] data = mCodec.encode(thermostat);
+        writeBits(data, HEADER_SIZE * 8 + 3 + 11, 60, 11);
+        assertNull(mCodec.parse(data));
+    }
+
+    @Test
+    public void rejectsTooManyPeriods() {
+
+        PackedThermostat thermostat = new PackedThermostat();
+        thermostat.setHasWeekSchedule(true);
+        byte[] data = Arrays.copyOf(mCodec.encode(thermostat), HEADER_SIZE + 40);
+        // Six periods of one minute each on Monday
+        writeBits(data, HEADER_SIZE * 8, 6, 3);
+        for (int i = 0; i < 6; i++) {
+            writeBits(data, HEADER_SIZE * 8 + 3 + 22 * i, 10 * i, 11);
+            writeBits(data, HEADER_SIZE * 8 + 3 + 22 * i + 11, 10 * i + 1, 11);
+        }
+        assertNull(mCodec.parse(data));
+    }
+
+    private static PackedThermostat thermostat() {
+
+        PackedThermostat thermostat = new PackedThermostat();
+        thermostat.setCurrentTemperature(205);
+        thermostat.setTargetTemperature(210);
+        thermostat.setDayTemperature(215);
+        thermostat.setNightTemperature(160);
+        thermostat.setDayOfTheWeek(3);
+        thermostat.setTime(17 * 60 + 45);
+        thermostat.setWeekScheduleOn(true);
+        for (int day = 0; day < PackedThermostat.DAYS; day++) {
+            thermostat.addPeriod(day, 7 * 60, 9 * 60 + 30);
+            thermostat.addPeriod(day, 18 * 60, 23 * 60);
+        }
+        return thermostat;
+    }
+
+    private static void writeShort(byte[] data, int offset, int value) {
+
+        data[offset] = (byte) (value >> 8);
+        data[offset + 1] = (byte) value;
+    }
+
+    private static void writeBits(byte[] data, int bit, int value, int count) {
+
+        for (int i = count - 1; i >= 0; i--, bit++) {
+            int mask = 0x80 >>> (bit & 7);
+            if ((value >> i & 1) != 0) {
+                data[bit >> 3] |= mask;
+            }
+            else {
+                data[bit >> 3] &= ~mask;
+            }
+        }
+    }
+}
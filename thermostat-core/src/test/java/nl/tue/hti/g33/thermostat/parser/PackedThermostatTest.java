@@ -0,0 +1,145 @@
+package nl.tue.hti.g33.thermostat.parser;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.List;
+
+import nl.tue.hti.g33.thermostat.utils.DaySchedule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Alex, 09.07.2015.
+ */
+public class PackedThermostatTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Test
+    public void decodesDeferredWeekProgram() {
+
+        PackedThermostat thermostat = deferred(weekProgram("<switch type=\"day\" state=\"on\">"
+                + "07:00</switch><switch type=\"night\" state=\"on\">09:30</switch>"));
+
+        assertTrue(thermostat.hasWeekSchedule());
+        for (int day = 0; day < PackedThermostat.DAYS; day++) {
+            assertEquals(1, thermostat.getPeriodCount(day));
+            assertEquals(7 * 60, thermostat.getPeriodStart(day, 0));
+            assertEquals(9 * 60 + 30, thermostat.getPeriodEnd(day, 0));
+        }
+    }
+
+    @Test
+    public void weekProgramWithBadTimeIsUnknown() {
+
+        PackedThermostat thermostat = deferred(weekProgram("<switch type=\"day\" state=\"on\">"
+                + "12:75</switch>"));
+
+        assertFalse(thermostat.hasWeekSchedule());
+        assertEquals(null, thermostat.getWeekSchedule());
+        assertEquals(0, thermostat.getPeriodCount(0));
+    }
+
+    @Test
+    public void weekProgramWithSwitchesOutOfOrderIsUnknown() {
+
+        PackedThermostat thermostat = deferred(weekProgram("<switch type=\"day\" state=\"on\">"
+                + "10:00</switch><switch type=\"night\" state=\"on\">09:00</switch>"));
+
+        assertFalse(thermostat.hasWeekSchedule());
+        assertEquals(null, thermostat.getWeekSchedule());
+    }
+
+    @Test
+    public void weekProgramThatDoesNotParseIsUnknown() {
+
+        PackedThermostat thermostat = deferred("<week_program state=\"on\"><day name=\"Monday\">"
+                + "</week_program>");
+
+        assertFalse(thermostat.hasWeekSchedule());
+        assertEquals(null, thermostat.toParsedThermostat().mWeekSchedule);
+    }
+
+    @Test
+    public void weekProgramIsDecodedWhenFirstRead() {
+
+        String program = weekProgram("<switch type=\"day\" state=\"on\">07:00</switch>");
+        int start = "<thermostat>".length();
+        byte[] data = ("<thermostat>" + program + "</thermostat>").getBytes(UTF_8);
+        PackedThermostat thermostat = new PackedThermostat();
+        thermostat.deferWeekSchedule(data, start, start + program.length());
+
+        List<DaySchedule> schedule = thermostat.toParsedThermostat().mWeekSchedule;
+        // Parsing did not decode the program yet, so breaking it now makes it unknown
+        data[start + 1] = 'x';
+
+        assertEquals(PackedThermostat.DAYS, schedule.size());
+        assertTrue(schedule.get(0).getPeriods().isEmpty());
+        assertFalse(thermostat.hasWeekSchedule());
+    }
+
+    @Test
+    public void undecodableWeekProgramFallsBack() {
+
+        PackedThermostat known = deferred(weekProgram("<switch type=\"day\" state=\"on\">"
+                + "07:00</switch><switch type=\"night\" state=\"on\">09:30</switch>"));
+        List<DaySchedule> previous = PackedThermostat.readOnlyWeekSchedule(
+                known.getWeekSchedule(), null);
+        PackedThermostat broken = deferred(weekProgram("<switch type=\"day\" state=\"on\">"
+                + "12:75</switch>"));
+
+        List<DaySchedule> schedule = PackedThermostat.readOnlyWeekSchedule(
+                broken.getWeekSchedule(), previous);
+
+        assertEquals(PackedThermostat.DAYS, schedule.size());
+        assertEquals(1, schedule.get(3).getPeriods().size());
+        assertEquals(7 * 60, schedule.get(3).getPeriods().get(0).getStartingTime());
+    }
+
+    @Test
+    public void sameWeekProgramKeepsItsView() {
+
+        PackedThermostat thermostat = deferred(weekProgram(""));
+        List<DaySchedule> first = PackedThermostat.readOnlyWeekSchedule(
+                thermostat.getWeekSchedule(), null);
+
+        assertSame(first, PackedThermostat.readOnlyWeekSchedule(thermostat.getWeekSchedule(),
+                first));
+    }
+
+    /**
+     * @return Snapshot whose week program is {@code program}, left undecoded.
+     */
+    private static PackedThermostat deferred(String program) {
+
+        byte[] data = ("<thermostat>" + program + "</thermostat>").getBytes(UTF_8);
+        int start = "<thermostat>".length();
+        PackedThermostat thermostat = new PackedThermostat();
+        thermostat.deferWeekSchedule(data, start, start + program.length());
+        return thermostat;
+    }
+
+    /**
+     * @return Week program in which every day starts with {@code switches}, followed by
+     * switches that are off.
+     */
+    private static String weekProgram(String switches) {
+
+        int on = switches.split("<switch").length - 1;
+        StringBuilder program = new StringBuilder("<week_program state=\"on\">");
+        for (String day : new String[] { "Monday", "Tuesday", "Wednesday", "Thursday",
+                "Friday", "Saturday", "Sunday" }) {
+            program.append("<day name=\"").append(day).append("\">").append(switches);
+            for (int i = on; i < PackedThermostat.SLOTS_PER_DAY; i++) {
+                program.append("<switch type=\"").append(i < 5 ? "day" : "night")
+                        .append("\" state=\"off\">00:00</switch>");
+            }
+            program.append("</day>");
+        }
+        return program.append("</week_program>").toString();
+    }
+}
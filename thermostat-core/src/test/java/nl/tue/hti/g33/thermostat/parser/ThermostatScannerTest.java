@@ -0,0 +1,222 @@
+package nl.tue.hti.g33.thermostat.parser;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+
+import nl.tue.hti.g33.thermostat.utils.DAY;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Alex, 09.07.2015.
+ */
+public class ThermostatScannerTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String[] DAYS = { "Monday", "Tuesday", "Wednesday", "Thursday",
+            "Friday", "Saturday", "Sunday" };
+
+    private ThermostatScanner mScanner;
+    private XmlParser mPullParser;
+
+    @Before
+    public void setUp() {
+
+        mScanner = new ThermostatScanner();
+        mPullParser = new XmlParser();
+        mPullParser.setScanning(false);
+    }
+
+    @Test
+    public void emptyProgramMatchesPullParser() {
+
+        assertSameAsPullParser(document(0));
+    }
+
+    @Test
+    public void fullProgramMatchesPullParser() {
+
+        assertSameAsPullParser(document(2));
+    }
+
+    @Test
+    public void fivePeriodsMatchPullParser() {
+
+        PackedThermostat scanned = assertSameAsPullParser(document(5));
+        assertEquals(5, scanned.getPeriodCount(6));
+        assertEquals(19 * 60, scanned.getPeriodStart(6, 4));
+        assertEquals(21 * 60, scanned.getPeriodEnd(6, 4));
+    }
+
+    @Test
+    public void readsAllValues() {
+
+        PackedThermostat scanned = mScanner.scan(document(2));
+
+        assertNotNull(scanned);
+        assertEquals(DAY.getByName("Wednesday").getId(), scanned.getDayOfTheWeek());
+        assertEquals(14 * 60 + 37, scanned.getTime());
+        assertEquals(204, scanned.getCurrentTemperature());
+        assertEquals(210, scanned.getTargetTemperature());
+        assertEquals(210, scanned.getDayTemperature());
+        assertEquals(175, scanned.getNightTemperature());
+        assertTrue(scanned.getWeekScheduleOn());
+        assertEquals(2, scanned.getPeriodCount(0));
+        assertEquals(10 * 60, scanned.getPeriodStart(0, 1));
+    }
+
+    @Test
+    public void ignoresAttributeOrderAndWhitespace() {
+
+        String document = new String(document(2), UTF_8)
+                .replace("<switch type=\"day\" state=\"on\">",
+                        "<switch\tstate = 'on'\n type=\"day\" >")
+                .replace("<switch type=\"night\" state=\"off\">",
+                        "<switch state=\"off\"   type='night'>")
+                .replace("<time>14:37</time>", "<time> 14:37\r\n</time>")
+                .replace("</week_program>", "</week_program  >")
+                .replace("\n", "\r\n  ");
+        byte[] data = ("\uFEFF<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" + document)
+                .getBytes(UTF_8);
+
+        PackedThermostat scanned = assertSameAsPullParser(data);
+        assertEquals(mScanner.scan(document(2)), scanned);
+    }
+
+    @Test
+    public void rejectsUnexpectedDocuments() {
+
+        String document = new String(document(2), UTF_8);
+        String[] unexpected = {
+                document.replace("<time>", "<!-- now --><time>"),
+                document.replace("<time>", "<time><![CDATA[").replace("</time>", "]]></time>"),
+                document.replace("Wednesday", "Wednes&#100;ay"),
+                document.replace("<time>14:37</time>", "<clock>14:37</clock>"),
+                document.replace("<thermostat>", "<thermostat id=\"33\">").replace("thermostat",
+                        "device"),
+                document.replace("state=\"on\">07:00", "state=\"maybe\">07:00"),
+                document.substring(0, document.length() / 2),
+                document + "<thermostat/>",
+                ""
+        };
+        for (String text : unexpected) {
+            assertNull(text, mScanner.scan(text.getBytes(UTF_8)));
+        }
+    }
+
+    @Test
+    public void fallsBackToPullParser() {
+
+        byte[] data = new String(document(2), UTF_8)
+                .replace("<time>", "<!-- now --><time>").getBytes(UTF_8);
+        assertNull(mScanner.scan(data));
+
+        ParsedThermostat parsed = new XmlParser().parse(data);
+        assertNotNull(parsed);
+        assertEquals(mScanner.scan(document(2)), PackedThermostat.pack(parsed));
+    }
+
+    @Test
+    public void lazyScanMatchesEagerScan() {
+
+        for (int periods : new int[] { 0, 2, 5 }) {
+            mScanner.setLazyWeekProgram(false);
+            PackedThermostat eager = mScanner.scan(document(periods));
+            mScanner.setLazyWeekProgram(true);
+            PackedThermostat lazy = mScanner.scan(document(periods));
+            assertEquals(eager, lazy);
+        }
+    }
+
+    @Test
+    public void scansSingleValues() {
+
+        ParsedThermostat thermostat = new ParsedThermostat();
+
+        assertTrue(scanValue("<current_temperature>20.4</current_temperature>", thermostat));
+        assertEquals(204, thermostat.mCurrentTemperature.getTenths());
+        assertTrue(scanValue("<target_temperature> 21 </target_temperature>\n", thermostat));
+        assertEquals(210, thermostat.mTargetTemperature.getTenths());
+        assertTrue(scanValue("<?xml version=\"1.0\"?><time>07:05</time>", thermostat));
+        assertEquals(7 * 60 + 5, thermostat.mTime);
+        assertTrue(scanValue("<current_day>Sunday</current_day>", thermostat));
+        assertEquals(DAY.getByName("Sunday"), thermostat.mDayOfTheWeek);
+        assertTrue(scanValue("<week_program_state>off</week_program_state>", thermostat));
+        assertFalse(thermostat.mWeekScheduleOn);
+    }
+
+    @Test
+    public void leavesThermostatAloneForUnexpectedValues() {
+
+        ParsedThermostat thermostat = new ParsedThermostat();
+        thermostat.mTime = 12 * 60;
+
+        assertFalse(scanValue("<time>12:75</time>", thermostat));
+        assertFalse(scanValue("<time>07:05</time><time>07:06</time>", thermostat));
+        assertFalse(scanValue("<clock>07:05</clock>", thermostat));
+        assertFalse(scanValue("<time>07&#58;05</time>", thermostat));
+        assertEquals(12 * 60, thermostat.mTime);
+    }
+
+    /**
+     * @return Scanned thermostat, after checking that it equals what XmlPullParser reads.
+     */
+    private PackedThermostat assertSameAsPullParser(byte[] data) {
+
+        PackedThermostat scanned = mScanner.scan(data);
+        ParsedThermostat parsed = mPullParser.parse(new ByteArrayInputStream(data));
+
+        assertNotNull(scanned);
+        assertNotNull(parsed);
+        assertEquals(PackedThermostat.pack(parsed), scanned);
+        return scanned;
+    }
+
+    private boolean scanValue(String document, ParsedThermostat thermostat) {
+
+        return mScanner.scanValue(document.getBytes(UTF_8), thermostat);
+    }
+
+    /**
+     * @param periods Day periods on every day, 0 to 5.
+     * @return Document in the format of the server, with periods of two hours starting at
+     * 07:00, 10:00, 13:00, ...
+     */
+    private static byte[] document(int periods) {
+
+        StringBuilder document = new StringBuilder("<thermostat>\n"
+                + "<current_day>Wednesday</current_day>\n<time>14:37</time>\n"
+                + "<current_temperature>20.4</current_temperature>\n"
+                + "<target_temperature>21.0</target_temperature>\n"
+                + "<day_temperature>21.0</day_temperature>\n"
+                + "<night_temperature>17.5</night_temperature>\n"
+                + "<week_program_state>on</week_program_state>\n"
+                + "<week_program state=\"on\">\n");
+        for (String day : DAYS) {
+            document.append("<day name=\"").append(day).append("\">\n");
+            for (int i = 0; i < 5; i++) {
+                boolean on = i < periods;
+                appendSwitch(document, "day", on, on ? 7 + 3 * i : 0);
+                appendSwitch(document, "night", on, on ? 9 + 3 * i : 0);
+            }
+            document.append("</day>\n");
+        }
+        document.append("</week_program>\n</thermostat>\n");
+        return document.toString().getBytes(UTF_8);
+    }
+
+    private static void appendSwitch(StringBuilder document, String type, boolean on,
+                                     int hours) {
+
+        document.append("<switch type=\"").append(type).append("\" state=\"")
+                .append(on ? "on" : "off").append("\">").append(hours < 10 ? "0" : "")
+                .append(hours).append(":00</switch>\n");
+    }
+}
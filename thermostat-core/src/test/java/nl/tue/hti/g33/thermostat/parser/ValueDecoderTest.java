@@ -0,0 +1,84 @@
+package nl.tue.hti.g33.thermostat.parser;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Alex, 08.07.2015.
+ */
+public class ValueDecoderTest {
+
+    @Test
+    public void decodesTimes() {
+
+        assertEquals(0, time("00:00"));
+        assertEquals(7 * 60 + 5, time("7:05"));
+        assertEquals(23 * 60 + 59, time(" 23:59\n"));
+        assertEquals(24 * 60, time("24:00"));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void rejectsMinutesOutOfRange() {
+
+        time("12:75");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void rejectsHoursOutOfRange() {
+
+        time("25:00");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void rejectsTimeAfterMidnight() {
+
+        time("24:01");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void rejectsMalformedTime() {
+
+        time("12.30");
+    }
+
+    @Test
+    public void truncatesToTenths() {
+
+        assertEquals(210, tenths("21"));
+        assertEquals(205, tenths("20.5"));
+        assertEquals(205, tenths("20.59"));
+        assertEquals(-35, tenths("-3.55"));
+        assertEquals(200, tenths("20."));
+        assertEquals(5, tenths(" +.5 "));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void rejectsMalformedNumber() {
+
+        tenths("2O.5");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void rejectsLoneDot() {
+
+        tenths(".");
+    }
+
+    /**
+     * Decode {@code text} as both characters and bytes and check that the results agree.
+     */
+    private static int time(String text) {
+
+        int value = ValueDecoder.decodeTime(text.toCharArray(), 0, text.length());
+        assertEquals(value, ValueDecoder.decodeTime(text.getBytes(), 0, text.length()));
+        return value;
+    }
+
+    private static int tenths(String text) {
+
+        int value = ValueDecoder.decodeTenths(text.toCharArray(), 0, text.length());
+        assertEquals(value, ValueDecoder.decodeTenths(text.getBytes(), 0, text.length()));
+        return value;
+    }
+}
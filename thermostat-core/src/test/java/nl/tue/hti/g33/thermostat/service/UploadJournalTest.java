@@ -0,0 +1,229 @@
+package nl.tue.hti.g33.thermostat.service;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Alex, 08.07.2015.
+ */
+public class UploadJournalTest {
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+
+        mFile = File.createTempFile("uploads", ".journal");
+        assertTrue(mFile.delete());
+    }
+
+    @After
+    public void tearDown() {
+
+        //noinspection ResultOfMethodCallIgnored
+        mFile.delete();
+        //noinspection ResultOfMethodCallIgnored
+        new File(mFile.getPath() + ".tmp").delete();
+    }
+
+    @Test
+    public void pendingUploadsSurviveReopening() {
+
+        UploadJournal journal = new UploadJournal(mFile);
+        journal.append("day_temperature", "<day_temperature>21.0</day_temperature>");
+        journal.append("week_program_state", "<week_program_state>on</week_program_state>");
+        journal.sync();
+
+        List<UploadJournal.Entry> pending = new UploadJournal(mFile).getPending();
+        assertEquals(2, pending.size());
+        assertEquals("day_temperature", pending.get(0).getResource());
+        assertEquals("<day_temperature>21.0</day_temperature>", pending.get(0).getBody());
+        assertEquals("week_program_state", pending.get(1).getResource());
+    }
+
+    @Test
+    public void acknowledgedUploadsAreNotReplayed() {
+
+        UploadJournal journal = new UploadJournal(mFile);
+        long seq = journal.append("day_temperature", "a");
+        journal.append("night_temperature", "b");
+        journal.acknowledge(seq);
+        journal.sync();
+
+        List<UploadJournal.Entry> pending = new UploadJournal(mFile).getPending();
+        assertEquals(1, pending.size());
+        assertEquals("night_temperature", pending.get(0).getResource());
+    }
+
+    @Test
+    public void newerUploadSupersedesOlderOne() {
+
+        UploadJournal journal = new UploadJournal(mFile);
+        long old = journal.append("day_temperature", "old");
+        journal.append("day_temperature", "new");
+        // Acknowledging the superseded upload must not drop the newer one
+        journal.acknowledge(old);
+        journal.sync();
+
+        List<UploadJournal.Entry> pending = new UploadJournal(mFile).getPending();
+        assertEquals(1, pending.size());
+        assertEquals("new", pending.get(0).getBody());
+    }
+
+    @Test
+    public void sequenceNumbersGrowAcrossReopening() {
+
+        UploadJournal journal = new UploadJournal(mFile);
+        long first = journal.append("day_temperature", "a");
+        journal.sync();
+
+        long second = new UploadJournal(mFile).append("night_temperature", "b");
+        assertTrue(second > first);
+    }
+
+    @Test
+    public void tornTailIsIgnored() throws IOException {
+
+        UploadJournal journal = new UploadJournal(mFile);
+        journal.append("day_temperature", "a");
+        journal.sync();
+        long intact = mFile.length();
+        journal.append("night_temperature", "b");
+        journal.sync();
+        truncate(mFile.length() - 2);
+
+        journal = new UploadJournal(mFile);
+        List<UploadJournal.Entry> pending = journal.getPending();
+        assertEquals(1, pending.size());
+        assertEquals("day_temperature", pending.get(0).getResource());
+        assertEquals(intact, mFile.length());
+
+        // Reopening rewrote the file, so new records are not appended to the torn one
+        journal.append("week_program_state", "c");
+        journal.sync();
+        assertEquals(2, new UploadJournal(mFile).getPending().size());
+    }
+
+    @Test
+    public void unknownRecordTypeEndsTheJournal() throws IOException {
+
+        UploadJournal journal = new UploadJournal(mFile);
+        journal.append("day_temperature", "a");
+        journal.sync();
+        FileOutputStream out = new FileOutputStream(mFile, true);
+        try {
+            out.write(new byte[] { 42, 0, 0, 0, 0, 0, 0, 0, 9 });
+        } finally {
+            out.close();
+        }
+
+        assertEquals(1, new UploadJournal(mFile).getPending().size());
+    }
+
+    @Test
+    public void compactionDropsAcknowledgedRecords() {
+
+        UploadJournal journal = new UploadJournal(mFile);
+        journal.append("day_temperature", "first");
+        journal.sync();
+        long single = mFile.length();
+        for (int i = 0; i < 500; i++) {
+            journal.acknowledge(journal.append("night_temperature", "value " + i));
+        }
+        journal.append("day_temperature", "last");
+        journal.sync();
+
+        assertTrue("journal was not compacted: " + mFile.length(),
+                mFile.length() < 100 * single);
+        List<UploadJournal.Entry> pending = new UploadJournal(mFile).getPending();
+        assertEquals(1, pending.size());
+        assertEquals("last", pending.get(0).getBody());
+    }
+
+    @Test
+    public void rejectedUploadIsDropped() {
+
+        UploadJournal journal = new UploadJournal(mFile);
+        long seq = journal.append("day_temperature", "a");
+
+        assertTrue(journal.fail(seq, true, 0));
+        assertFalse(journal.hasPending());
+        journal.sync();
+        assertFalse(new UploadJournal(mFile).hasPending());
+    }
+
+    @Test
+    public void failedUploadWaitsBeforeRetrying() {
+
+        UploadJournal journal = new UploadJournal(mFile);
+        long seq = journal.append("day_temperature", "a");
+
+        assertFalse(journal.fail(seq, false, 1000));
+        assertTrue(journal.hasPending());
+        assertEquals(0, journal.getDue(1000).size());
+        assertEquals(1, journal.getDue(1000 + 60 * 60 * 1000).size());
+
+        // The delay doubles with every failure
+        long firstDelay = firstDue(journal, 1000);
+        assertFalse(journal.fail(seq, false, 1000));
+        assertEquals(2 * firstDelay, firstDue(journal, 1000));
+    }
+
+    @Test
+    public void uploadIsDroppedAfterTooManyFailures() {
+
+        UploadJournal journal = new UploadJournal(mFile);
+        long seq = journal.append("day_temperature", "a");
+
+        int attempts = 1;
+        while (!journal.fail(seq, false, 0)) {
+            attempts++;
+            assertTrue("never dropped", attempts < 100);
+        }
+        assertTrue(attempts > 1);
+        assertFalse(journal.hasPending());
+    }
+
+    /**
+     * @return Delay after {@code now} until the first upload is due again.
+     */
+    private static long firstDue(UploadJournal journal, long now) {
+
+        long delay = 1;
+        while (journal.getDue(now + delay).isEmpty()) {
+            delay *= 2;
+        }
+        long low = delay / 2;
+        while (low + 1 < delay) {
+            long middle = (low + delay) / 2;
+            if (journal.getDue(now + middle).isEmpty()) {
+                low = middle;
+            }
+            else {
+                delay = middle;
+            }
+        }
+        return delay;
+    }
+
+    private void truncate(long length) throws IOException {
+
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        try {
+            file.setLength(length);
+        } finally {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package nl.tue.hti.g33.thermostat.utils;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Alex, 09.07.2015.
+ */
+public class DayScheduleTest {
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    @Test
+    public void mergesOverlappingAndTouchingPeriods() {
+
+        DaySchedule schedule = new DaySchedule();
+        schedule.addDayPeriod(60, 120);
+        schedule.addDayPeriod(120, 180);
+        schedule.addDayPeriod(150, 240);
+
+        assertPeriods(schedule, 60, 240);
+        assertFalse(schedule.isDayAt(59));
+        assertTrue(schedule.isDayAt(60));
+        assertTrue(schedule.isDayAt(239));
+        assertFalse(schedule.isDayAt(240));
+    }
+
+    @Test
+    public void periodsAcrossWordBoundaries() {
+
+        DaySchedule schedule = new DaySchedule();
+        schedule.addDayPeriod(63, 65);
+        schedule.addDayPeriod(128, 192);
+        schedule.addDayPeriod(1407, 1409);
+
+        assertPeriods(schedule, 63, 65, 128, 192, 1407, 1409);
+        assertEquals(63, schedule.getNextSwitch(0));
+        assertEquals(63, schedule.getNextSwitch(63));
+        assertEquals(65, schedule.getNextSwitch(64));
+        assertEquals(128, schedule.getNextSwitch(66));
+        assertEquals(192, schedule.getNextSwitch(129));
+        assertEquals(1407, schedule.getNextSwitch(193));
+        assertEquals(1409, schedule.getNextSwitch(1408));
+        assertEquals(MINUTES_PER_DAY, schedule.getNextSwitch(1410));
+    }
+
+    @Test
+    public void periodUntilMidnight() {
+
+        DaySchedule schedule = new DaySchedule();
+        schedule.addDayPeriod(new Period(22, 0, 24, 0));
+
+        assertPeriods(schedule, 22 * 60, MINUTES_PER_DAY);
+        assertTrue(schedule.isDayAt(MINUTES_PER_DAY - 1));
+        assertEquals(22 * 60, schedule.getNextSwitch(0));
+        assertEquals(MINUTES_PER_DAY, schedule.getNextSwitch(22 * 60 + 1));
+        assertEquals(MINUTES_PER_DAY, schedule.getNextSwitch(MINUTES_PER_DAY));
+    }
+
+    @Test
+    public void wholeDay() {
+
+        DaySchedule schedule = new DaySchedule();
+        schedule.addDayPeriod(0, MINUTES_PER_DAY);
+
+        assertPeriods(schedule, 0, MINUTES_PER_DAY);
+        assertEquals(0, schedule.getNextSwitch(0));
+        assertEquals(MINUTES_PER_DAY, schedule.getNextSwitch(1));
+    }
+
+    @Test
+    public void zeroLengthPeriodChangesNothing() {
+
+        DaySchedule schedule = new DaySchedule();
+        schedule.addDayPeriod(600, 600);
+
+        assertTrue(schedule.getPeriods().isEmpty());
+        assertEquals(MINUTES_PER_DAY, schedule.getNextSwitch(0));
+    }
+
+    @Test
+    public void rejectsSixthPeriod() {
+
+        DaySchedule schedule = fivePeriods();
+        int version = schedule.getVersion();
+        try {
+            schedule.addDayPeriod(1000, 1100);
+            fail("A sixth period was added");
+        }
+        catch (IllegalArgumentException e) {
+            // Expected
+        }
+        assertEquals(version, schedule.getVersion());
+        assertPeriods(schedule, 0, 60, 120, 180, 240, 300, 360, 420, 480, 540);
+    }
+
+    @Test
+    public void acceptsPeriodMergingIntoFive() {
+
+        DaySchedule schedule = fivePeriods();
+        // Touches one period and bridges two others, so there are fewer periods afterwards
+        schedule.addDayPeriod(540, 600);
+        schedule.addDayPeriod(170, 250);
+
+        assertPeriods(schedule, 0, 60, 120, 300, 360, 420, 480, 600);
+    }
+
+    @Test
+    public void rejectsIllegalPeriods() {
+
+        DaySchedule schedule = new DaySchedule();
+        int[][] illegal = {{-1, 10}, {10, MINUTES_PER_DAY + 1}, {20, 10}};
+        for (int[] period : illegal) {
+            try {
+                schedule.addDayPeriod(period[0], period[1]);
+                fail("Added " + period[0] + " to " + period[1]);
+            }
+            catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+        assertTrue(schedule.getPeriods().isEmpty());
+    }
+
+    @Test
+    public void deletesMergedPeriod() {
+
+        DaySchedule schedule = new DaySchedule();
+        schedule.addDayPeriod(60, 120);
+        schedule.addDayPeriod(120, 180);
+        schedule.addDayPeriod(300, 360);
+
+        // Only the start of the merged period counts, not the start of a part of it
+        schedule.deleteDayPeriod(new Period(2, 0, 3, 0));
+        assertPeriods(schedule, 60, 180, 300, 360);
+
+        schedule.deleteDayPeriod(new Period(1, 0, 2, 0));
+        assertPeriods(schedule, 300, 360);
+        assertFalse(schedule.isDayAt(150));
+    }
+
+    @Test
+    public void deletesPeriodUntilMidnight() {
+
+        DaySchedule schedule = new DaySchedule();
+        schedule.addDayPeriod(0, 60);
+        schedule.addDayPeriod(1380, MINUTES_PER_DAY);
+
+        schedule.deleteDayPeriod(new Period(23, 0, 24, 0));
+        assertPeriods(schedule, 0, 60);
+        schedule.deleteDayPeriod(new Period(0, 0, 1, 0));
+        assertTrue(schedule.getPeriods().isEmpty());
+    }
+
+    @Test
+    public void versionChangesWithSchedule() {
+
+        DaySchedule schedule = new DaySchedule();
+        int version = schedule.getVersion();
+        schedule.addDayPeriod(60, 120);
+        assertTrue(schedule.getVersion() != version);
+
+        version = schedule.getVersion();
+        List<Period> periods = schedule.getPeriods();
+        schedule.deleteDayPeriod(new Period(5, 0, 6, 0));
+        assertEquals(version, schedule.getVersion());
+
+        DaySchedule copy = new DaySchedule(schedule);
+        copy.addDayPeriod(300, 360);
+        assertPeriods(schedule, 60, 120);
+        assertEquals(1, periods.size());
+        assertPeriods(copy, 60, 120, 300, 360);
+    }
+
+    private static DaySchedule fivePeriods() {
+
+        DaySchedule schedule = new DaySchedule();
+        for (int start = 0; start < 600; start += 120) {
+            schedule.addDayPeriod(start, start + 60);
+        }
+        return schedule;
+    }
+
+    /**
+     * @param bounds Start and end of every expected period, in order.
+     */
+    private static void assertPeriods(DaySchedule schedule, int... bounds) {
+
+        List<Period> periods = schedule.getPeriods();
+        assertEquals(bounds.length / 2, periods.size());
+        for (int i = 0; i < periods.size(); i++) {
+            assertEquals(bounds[2 * i], periods.get(i).getStartingTime());
+            assertEquals(bounds[2 * i + 1], periods.get(i).getEndTime());
+        }
+    }
+}
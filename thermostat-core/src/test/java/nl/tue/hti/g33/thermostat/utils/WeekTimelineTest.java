@@ -0,0 +1,174 @@
+package nl.tue.hti.g33.thermostat.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Alex, 09.07.2015.
+ */
+public class WeekTimelineTest {
+
+    private static final int DAY = WeekTimeline.MINUTES_PER_DAY;
+    private static final int WEEK = WeekTimeline.MINUTES_PER_WEEK;
+
+    private static final Temperature DAY_TEMPERATURE = Temperature.ofTenths(210);
+    private static final Temperature NIGHT_TEMPERATURE = Temperature.ofTenths(160);
+
+    @Test
+    public void mergesSwitchesAtMidnight() {
+
+        List<DaySchedule> week = emptyWeek();
+        week.get(0).addDayPeriod(22 * 60, DAY);
+        week.get(1).addDayPeriod(0, 2 * 60);
+        WeekTimeline timeline = compile(week);
+
+        assertEquals(2, timeline.getSwitchCount());
+        assertFalse(timeline.isDayAt(0, 22 * 60 - 1));
+        assertTrue(timeline.isDayAt(0, 22 * 60));
+        assertTrue(timeline.isDayAt(0, DAY - 1));
+        assertTrue(timeline.isDayAt(1, 0));
+        assertTrue(timeline.isDayAt(1, 2 * 60 - 1));
+        assertFalse(timeline.isDayAt(1, 2 * 60));
+        // No switch at midnight
+        assertEquals(DAY + 2 * 60, timeline.nextSwitchAfter(0, 23 * 60));
+        assertEquals(22 * 60, timeline.nextSwitchAfter(6, 0) - WEEK);
+    }
+
+    @Test
+    public void keepsSwitchAtMidnightWithoutNextDay() {
+
+        List<DaySchedule> week = emptyWeek();
+        week.get(2).addDayPeriod(22 * 60, DAY);
+        WeekTimeline timeline = compile(week);
+
+        assertEquals(2, timeline.getSwitchCount());
+        assertTrue(timeline.isDayAt(2, DAY - 1));
+        assertFalse(timeline.isDayAt(3, 0));
+        assertEquals(3 * DAY, timeline.nextSwitchAfter(2, 23 * 60));
+    }
+
+    @Test
+    public void mergesSundayIntoMonday() {
+
+        List<DaySchedule> week = emptyWeek();
+        week.get(6).addDayPeriod(22 * 60, DAY);
+        week.get(0).addDayPeriod(0, 7 * 60);
+        WeekTimeline timeline = compile(week);
+
+        assertEquals(2, timeline.getSwitchCount());
+        assertTrue(timeline.isDayAt(0, 0));
+        assertTrue(timeline.isDayAt(0, 7 * 60 - 1));
+        assertFalse(timeline.isDayAt(0, 7 * 60));
+        assertFalse(timeline.isDayAt(6, 22 * 60 - 1));
+        assertTrue(timeline.isDayAt(6, 22 * 60));
+        assertTrue(timeline.isDayAt(6, DAY - 1));
+        assertEquals(7 * 60, timeline.nextSwitchAfter(0, 0));
+        assertEquals(6 * DAY + 22 * 60, timeline.nextSwitchAfter(0, 7 * 60));
+        // Wraps into Monday of the next week
+        assertEquals(WEEK + 7 * 60, timeline.nextSwitchAfter(6, 22 * 60));
+        assertEquals(WEEK + 7 * 60, timeline.nextSwitchAfter(6, DAY - 1));
+    }
+
+    @Test
+    public void wholeWeekOfDay() {
+
+        List<DaySchedule> week = emptyWeek();
+        for (DaySchedule schedule : week) {
+            schedule.addDayPeriod(0, DAY);
+        }
+        WeekTimeline timeline = compile(week);
+
+        assertEquals(0, timeline.getSwitchCount());
+        assertEquals(-1, timeline.nextSwitchAfter(3, 600));
+        for (int day = 0; day < 7; day++) {
+            assertTrue(timeline.isDayAt(day, 0));
+            assertTrue(timeline.isDayAt(day, DAY - 1));
+            assertSame(DAY_TEMPERATURE, timeline.targetAt(day, 720));
+        }
+    }
+
+    @Test
+    public void emptyWeekIsNight() {
+
+        WeekTimeline timeline = compile(emptyWeek());
+
+        assertEquals(0, timeline.getSwitchCount());
+        assertEquals(-1, timeline.nextSwitchAfter(0, 0));
+        assertFalse(timeline.isDayAt(0, 0));
+        assertSame(NIGHT_TEMPERATURE, timeline.targetAt(6, DAY - 1));
+    }
+
+    @Test
+    public void wrapsToFirstSwitchOfNextWeek() {
+
+        List<DaySchedule> week = emptyWeek();
+        week.get(1).addDayPeriod(8 * 60, 17 * 60);
+        week.get(4).addDayPeriod(9 * 60, 12 * 60);
+        WeekTimeline timeline = compile(week);
+
+        assertEquals(4, timeline.getSwitchCount());
+        assertEquals(DAY + 8 * 60, timeline.nextSwitchAfter(0, 0));
+        assertEquals(DAY + 17 * 60, timeline.nextSwitchAfter(1, 8 * 60));
+        assertEquals(4 * DAY + 12 * 60, timeline.nextSwitchAfter(4, 11 * 60));
+        assertEquals(WEEK + DAY + 8 * 60, timeline.nextSwitchAfter(4, 12 * 60));
+        assertEquals(WEEK + DAY + 8 * 60, timeline.nextSwitchAfter(6, DAY - 1));
+    }
+
+    @Test
+    public void stateFollowsSwitchParity() {
+
+        List<DaySchedule> week = emptyWeek();
+        for (int day = 0; day < 7; day++) {
+            for (int start = 0; start < 5 * 240; start += 240) {
+                week.get(day).addDayPeriod(start + 60 * day, start + 60 * day + 120);
+            }
+        }
+        WeekTimeline timeline = compile(week);
+
+        for (int day = 0; day < 7; day++) {
+            DaySchedule schedule = week.get(day);
+            for (int minute = 0; minute < DAY; minute++) {
+                assertEquals(schedule.isDayAt(minute), timeline.isDayAt(day, minute));
+                int next = timeline.nextSwitchAfter(day, minute);
+                assertTrue(next > day * DAY + minute);
+            }
+        }
+    }
+
+    @Test
+    public void rebuildKeepsUnchangedTimeline() {
+
+        List<DaySchedule> week = emptyWeek();
+        week.get(0).addDayPeriod(60, 120);
+        WeekTimeline timeline = compile(week);
+
+        assertSame(timeline, timeline.rebuild(week, DAY_TEMPERATURE, NIGHT_TEMPERATURE));
+
+        week.get(0).addDayPeriod(120, 180);
+        WeekTimeline rebuilt = timeline.rebuild(week, DAY_TEMPERATURE, NIGHT_TEMPERATURE);
+        assertEquals(2, rebuilt.getSwitchCount());
+        assertEquals(180, rebuilt.nextSwitchAfter(0, 60));
+        assertEquals(120, timeline.nextSwitchAfter(0, 60));
+    }
+
+    private static List<DaySchedule> emptyWeek() {
+
+        List<DaySchedule> week = new ArrayList<>(7);
+        for (int day = 0; day < 7; day++) {
+            week.add(new DaySchedule());
+        }
+        return week;
+    }
+
+    private static WeekTimeline compile(List<DaySchedule> week) {
+
+        return WeekTimeline.compile(week, DAY_TEMPERATURE, NIGHT_TEMPERATURE);
+    }
+}